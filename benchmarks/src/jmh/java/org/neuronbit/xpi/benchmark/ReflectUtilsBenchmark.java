@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.benchmark;
+
+import org.neuronbit.xpi.common.utils.ReflectUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Descriptor building and parsing of {@link ReflectUtils}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ReflectUtilsBenchmark {
+
+    private String className = "java.lang.String[][]";
+
+    private String classDesc = "[[Ljava/lang/String;";
+
+    private String paramsDesc = "Ljava/lang/String;I[JLjava/util/Map;[[Ljava/lang/Object;Z";
+
+    private Method method;
+
+    @Setup
+    public void setUp() throws Exception {
+        method = Map.class.getMethod("put", Object.class, Object.class);
+    }
+
+    @Benchmark
+    public String getDescOfMethod() {
+        return ReflectUtils.getDesc(method);
+    }
+
+    @Benchmark
+    public String getDescWithoutMethodName() {
+        return ReflectUtils.getDescWithoutMethodName(method);
+    }
+
+    @Benchmark
+    public String name2desc() {
+        return ReflectUtils.name2desc(className);
+    }
+
+    @Benchmark
+    public String desc2name() {
+        return ReflectUtils.desc2name(classDesc);
+    }
+
+    @Benchmark
+    public Class<?> desc2class() throws ClassNotFoundException {
+        return ReflectUtils.desc2class(classDesc);
+    }
+
+    @Benchmark
+    public Class<?>[] desc2classArray() throws ClassNotFoundException {
+        return ReflectUtils.desc2classArray(paramsDesc);
+    }
+}
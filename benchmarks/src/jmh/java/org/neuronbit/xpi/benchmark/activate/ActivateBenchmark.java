@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.benchmark.activate;
+
+import org.neuronbit.xpi.common.extension.ActivateCriteria;
+import org.neuronbit.xpi.common.extension.ExtensionFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Activate extension selection over the {@link Filter} extensions, per group and criteria:
+ * <ul>
+ * <li>none: no parameters, only the filters without activate value</li>
+ * <li>matching: parameters matching most of the activate values</li>
+ * <li>explicit: matching parameters, plus extension names added and removed explicitly</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ActivateBenchmark {
+
+    @Param({"provider", "consumer"})
+    public String group;
+
+    @Param({"none", "matching", "explicit"})
+    public String criteria;
+
+    private ExtensionFactory<Filter> factory;
+
+    private ActivateCriteria activateCriteria;
+
+    private String[] values;
+
+    @Setup
+    public void setUp() {
+        factory = ExtensionFactory.getExtensionFactory(Filter.class);
+        Map<String, String> params = new HashMap<>();
+        switch (criteria) {
+            case "none":
+                break;
+            case "explicit":
+                values = new String[]{"echo", "-auth"};
+                // fall through
+            case "matching":
+                params.put("accesslog", "true");
+                params.put("cache", "lru");
+                params.put("monitor", "on");
+                params.put("validation", "true");
+                params.put("trace.level", "debug");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown criteria " + criteria);
+        }
+        activateCriteria = new ActivateCriteria(params);
+        factory.getActivateExtension(activateCriteria, values, group);
+    }
+
+    @Benchmark
+    public List<Filter> getActivateExtension() {
+        return factory.getActivateExtension(activateCriteria, values, group);
+    }
+}
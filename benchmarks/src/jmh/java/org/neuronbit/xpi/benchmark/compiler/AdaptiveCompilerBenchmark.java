@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.benchmark.compiler;
+
+import org.neuronbit.xpi.common.extension.ExtensionFactory;
+
+import javassist.CtClass;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of the first adaptive extension with each compiler backend. Every measured call runs in a fresh
+ * class loader, the adaptive class is never found already defined.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+@Fork(3)
+public class AdaptiveCompilerBenchmark {
+
+    @Param({"javassist", "jdk", "bytecode"})
+    public String compiler;
+
+    private URLClassLoader classLoader;
+
+    private Method create;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        classLoader = new URLClassLoader(new URL[]{location(ExtensionFactory.class), location(CtClass.class), location(AdaptiveStartup.class)},
+                ClassLoader.getSystemClassLoader().getParent());
+        create = classLoader.loadClass(AdaptiveStartup.class.getName()).getMethod("create", String.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        classLoader.close();
+    }
+
+    @Benchmark
+    public Object createAdaptiveExtension() throws Exception {
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        // the extension class loader and the jdk compiler work with the context class loader
+        thread.setContextClassLoader(classLoader);
+        try {
+            return create.invoke(null, compiler);
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    private static URL location(Class<?> clazz) {
+        return clazz.getProtectionDomain().getCodeSource().getLocation();
+    }
+}
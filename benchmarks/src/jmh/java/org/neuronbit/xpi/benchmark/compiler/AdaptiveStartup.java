@@ -0,0 +1,32 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.benchmark.compiler;
+
+import org.neuronbit.xpi.common.compiler.support.AdaptiveCompiler;
+import org.neuronbit.xpi.common.extension.ExtensionFactory;
+
+/**
+ * Entry point called in a fresh class loader, so that every call pays the full cost of creating the first
+ * adaptive extension: loading the compiler, generating and defining the adaptive class.
+ */
+public class AdaptiveStartup {
+
+    public static Object create(String compiler) {
+        AdaptiveCompiler.setDefaultCompiler(compiler);
+        return ExtensionFactory.getExtensionFactory(DemoService.class).getAdaptiveExtension();
+    }
+}
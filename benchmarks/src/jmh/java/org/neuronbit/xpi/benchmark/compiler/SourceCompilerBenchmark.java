@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.benchmark.compiler;
+
+import org.neuronbit.xpi.common.compiler.Compiler;
+import org.neuronbit.xpi.common.extension.ExtensionFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compile time of java source with a warm compiler. Every call compiles a class with a new name, so the compilers
+ * never find it already defined.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class SourceCompilerBenchmark {
+
+    private static final String PACKAGE = SourceCompilerBenchmark.class.getPackage().getName();
+
+    @Param({"javassist", "jdk"})
+    public String compiler;
+
+    private Compiler instance;
+
+    private ClassLoader classLoader;
+
+    private int count;
+
+    @Setup
+    public void setUp() {
+        instance = ExtensionFactory.getExtensionFactory(Compiler.class).getExtension(compiler);
+        classLoader = SourceCompilerBenchmark.class.getClassLoader();
+    }
+
+    @Benchmark
+    public Class<?> compile() {
+        String name = "Compiled" + compiler + count++;
+        String code = "package " + PACKAGE + ";\n"
+                + "public class " + name + " implements " + DemoService.class.getName() + " {\n"
+                + "public String echo(" + DemoParam.class.getName() + " param, String message) {\n"
+                + "return \"" + name + ": \" + message;\n"
+                + "}\n"
+                + "public long sum(" + DemoParam.class.getName() + " param, long a, int b, double c) {\n"
+                + "return a + b + (long) c;\n"
+                + "}\n"
+                + "public void close(" + DemoParam.class.getName() + " param) {\n"
+                + "}\n"
+                + "}";
+        return instance.compile(code, classLoader);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.benchmark.extension;
+
+import org.neuronbit.xpi.common.extension.ExtensionFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm adaptive extension lookup, and dispatch of adaptive methods to one, two or three extension names.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AdaptiveBenchmark {
+
+    private final GreetingParam[] params = {new GreetingParam("hello"), new GreetingParam("hi"), new GreetingParam("welcome")};
+
+    private ExtensionFactory<Greeting> factory;
+
+    private Greeting adaptive;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        factory = ExtensionFactory.getExtensionFactory(Greeting.class);
+        adaptive = factory.getAdaptiveExtension();
+    }
+
+    @Benchmark
+    public Greeting getAdaptiveExtension() {
+        return factory.getAdaptiveExtension();
+    }
+
+    @Benchmark
+    public String dispatchOneName() {
+        return adaptive.greet(params[0], "xpi");
+    }
+
+    @Benchmark
+    public String dispatchTwoNames() {
+        return adaptive.greet(params[next++ & 1], "xpi");
+    }
+
+    @Benchmark
+    public String dispatchThreeNames() {
+        int i = next;
+        next = i + 1 == params.length ? 0 : i + 1;
+        return adaptive.greet(params[i], "xpi");
+    }
+}
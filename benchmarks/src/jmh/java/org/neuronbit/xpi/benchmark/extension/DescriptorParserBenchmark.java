@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.benchmark.extension;
+
+import org.neuronbit.xpi.common.extension.support.ExtensionDescriptorParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.neuronbit.xpi.common.constants.Constants.COMMA_SPLIT_PATTERN;
+
+/**
+ * Parsing of a synthetic set of extension configuration files: the line based parsing with {@link BufferedReader},
+ * as formerly done by the extension class loader, against {@link ExtensionDescriptorParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DescriptorParserBenchmark {
+
+    @Param({"100"})
+    private int files;
+
+    @Param({"8", "64"})
+    private int extensions;
+
+    private byte[][] descriptors;
+
+    @Setup
+    public void setUp() {
+        descriptors = new byte[files][];
+        for (int f = 0; f < files; f++) {
+            StringBuilder buf = new StringBuilder("# synthetic extensions of interface ").append(f).append('\n');
+            for (int e = 0; e < extensions; e++) {
+                String className = "org.example.module" + f + ".extension.impl.SyntheticExtension" + e;
+                switch (e % 4) {
+                    case 0:
+                        buf.append("ext").append(e).append('=').append(className).append('\n');
+                        break;
+                    case 1:
+                        buf.append("  ext").append(e).append(" = ").append(className).append("  # with comment\r\n");
+                        break;
+                    case 2:
+                        buf.append("ext").append(e).append(",alias").append(e).append('=').append(className).append("\n\n");
+                        break;
+                    default:
+                        buf.append(className).append('\n');
+                }
+            }
+            descriptors[f] = buf.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public void reader(Blackhole blackhole) throws IOException {
+        for (byte[] descriptor : descriptors) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(descriptor), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final int ci = line.indexOf('#');
+                    if (ci >= 0) {
+                        line = line.substring(0, ci);
+                    }
+                    line = line.trim();
+                    if (line.length() > 0) {
+                        String name = null;
+                        String clazz;
+                        int i = line.indexOf('=');
+                        if (i > 0) {
+                            name = line.substring(0, i).trim();
+                            clazz = line.substring(i + 1).trim();
+                        } else {
+                            clazz = line;
+                        }
+                        blackhole.consume(clazz);
+                        if (name != null) {
+                            blackhole.consume(COMMA_SPLIT_PATTERN.split(name));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void bytes(Blackhole blackhole) throws IOException {
+        for (byte[] descriptor : descriptors) {
+            ExtensionDescriptorParser parser;
+            try (InputStream in = new ByteArrayInputStream(descriptor)) {
+                parser = ExtensionDescriptorParser.parse(in);
+            }
+            while (parser.next()) {
+                blackhole.consume(parser.getClassName());
+                String name = parser.getName();
+                if (name != null) {
+                    blackhole.consume(ExtensionDescriptorParser.splitNames(name));
+                }
+            }
+        }
+    }
+}
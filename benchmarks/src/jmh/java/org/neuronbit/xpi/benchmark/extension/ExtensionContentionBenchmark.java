@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.benchmark.extension;
+
+import org.neuronbit.xpi.common.extension.ExtensionFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm lookups by 64 threads, the extensions are already created.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(64)
+@Fork(2)
+public class ExtensionContentionBenchmark {
+
+    private static final String[] NAMES = {"hello", "hi", "welcome", "wired"};
+
+    private ExtensionFactory<Greeting> factory;
+
+    @Setup
+    public void setUp() {
+        factory = ExtensionFactory.getExtensionFactory(Greeting.class);
+        for (String name : NAMES) {
+            factory.getExtension(name);
+        }
+    }
+
+    @Benchmark
+    public Greeting getExtension() {
+        return factory.getExtension("hello");
+    }
+
+    @Benchmark
+    public Greeting getExtension_names() {
+        return factory.getExtension(NAMES[ThreadLocalRandom.current().nextInt(NAMES.length)]);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.benchmark.extension.impl;
+
+import org.neuronbit.xpi.benchmark.extension.Greeting;
+import org.neuronbit.xpi.benchmark.extension.GreetingParam;
+import org.neuronbit.xpi.common.extension.inject.DisableInject;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
+
+/**
+ * Greeting with many setters: extensions to inject, non extension types, primitives and a disabled one.
+ */
+public class WiredGreeting implements Greeting {
+
+    private Greeting first;
+
+    private Greeting second;
+
+    private Greeting third;
+
+    private Greeting fourth;
+
+    private Greeting fifth;
+
+    private Greeting sixth;
+
+    private Greeting seventh;
+
+    private Greeting eighth;
+
+    private Greeting disabled;
+
+    private Executor executor;
+
+    private Charset charset;
+
+    private String prefix;
+
+    private int times;
+
+    public void setFirst(Greeting first) {
+        this.first = first;
+    }
+
+    public void setSecond(Greeting second) {
+        this.second = second;
+    }
+
+    public void setThird(Greeting third) {
+        this.third = third;
+    }
+
+    public void setFourth(Greeting fourth) {
+        this.fourth = fourth;
+    }
+
+    public void setFifth(Greeting fifth) {
+        this.fifth = fifth;
+    }
+
+    public void setSixth(Greeting sixth) {
+        this.sixth = sixth;
+    }
+
+    public void setSeventh(Greeting seventh) {
+        this.seventh = seventh;
+    }
+
+    public void setEighth(Greeting eighth) {
+        this.eighth = eighth;
+    }
+
+    @DisableInject
+    public void setDisabled(Greeting disabled) {
+        this.disabled = disabled;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public void setTimes(int times) {
+        this.times = times;
+    }
+
+    @Override
+    public String greet(GreetingParam param, String name) {
+        return first.greet(param, name);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.benchmark.scope;
+
+import org.neuronbit.xpi.common.extension.ExtensionFactory;
+import org.neuronbit.xpi.common.extension.PooledExtension;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A not thread safe extension used by 8 threads: a singleton guarded by synchronized, against the instances of the
+ * prototype, thread and pooled scopes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(2)
+public class ScopeBenchmark {
+
+    private final String[] fields = {"id", "12345", "name", "extension", "scope", "pooled"};
+
+    private ExtensionFactory<Codec> factory;
+
+    @Setup
+    public void setUp() {
+        factory = ExtensionFactory.getExtensionFactory(Codec.class);
+        factory.getExtension("singleton");
+    }
+
+    @Benchmark
+    public String synchronizedSingleton() {
+        Codec codec = factory.getExtension("singleton");
+        synchronized (codec) {
+            return codec.encode(fields);
+        }
+    }
+
+    @Benchmark
+    public String prototype() {
+        return factory.getExtension("prototype").encode(fields);
+    }
+
+    @Benchmark
+    public String thread() {
+        return factory.getExtension("thread").encode(fields);
+    }
+
+    @Benchmark
+    public String pooled() {
+        try (PooledExtension<Codec> codec = factory.borrowExtension("pooled")) {
+            return codec.get().encode(fields);
+        }
+    }
+}
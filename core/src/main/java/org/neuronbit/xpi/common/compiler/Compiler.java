@@ -16,8 +16,14 @@
  */
 package org.neuronbit.xpi.common.compiler;
 
+import org.neuronbit.xpi.common.extension.AdaptiveClassCodeGenerator;
 import org.neuronbit.xpi.common.extension.SPI;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Compiler. (SPI, Singleton, ThreadSafe)
  */
@@ -33,4 +39,55 @@ public interface Compiler {
      */
     Class<?> compile(String code, ClassLoader classLoader);
 
+    /**
+     * Create the adaptive class of an extension interface, by default compile the source generated by
+     * {@link AdaptiveClassCodeGenerator}.
+     *
+     * @param type           extension interface
+     * @param defaultExtName default extension name, may be null
+     * @param classLoader    classloader
+     * @return adaptive class
+     */
+    default Class<?> compileAdaptive(Class<?> type, String defaultExtName, ClassLoader classLoader) {
+        return compile(new AdaptiveClassCodeGenerator(type, defaultExtName).generate(), classLoader);
+    }
+
+    /**
+     * Compile several java sources at once, by default one by one. The compilers which have a start up cost per
+     * compilation compile them together.
+     *
+     * @param codes       Java source codes
+     * @param classLoader classloader
+     * @return Compiled classes, in the order of the sources
+     */
+    default List<Class<?>> compile(List<String> codes, ClassLoader classLoader) {
+        List<Class<?>> classes = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            classes.add(compile(code, classLoader));
+        }
+        return classes;
+    }
+
+    /**
+     * Create the adaptive classes of several extension interfaces at once, by default compile together the sources
+     * generated by {@link AdaptiveClassCodeGenerator}.
+     *
+     * @param defaultExtNames extension interface -> default extension name, may be null
+     * @param classLoader     classloader
+     * @return extension interface -> adaptive class, in the order of the interfaces
+     */
+    default Map<Class<?>, Class<?>> compileAdaptive(Map<Class<?>, String> defaultExtNames, ClassLoader classLoader) {
+        List<Class<?>> types = new ArrayList<>(defaultExtNames.keySet());
+        List<String> codes = new ArrayList<>(types.size());
+        for (Class<?> type : types) {
+            codes.add(new AdaptiveClassCodeGenerator(type, defaultExtNames.get(type)).generate());
+        }
+        List<Class<?>> classes = compile(codes, classLoader);
+        Map<Class<?>, Class<?>> result = new LinkedHashMap<>();
+        for (int i = 0; i < types.size(); i++) {
+            result.put(types.get(i), classes.get(i));
+        }
+        return result;
+    }
+
 }
@@ -17,7 +17,18 @@
 package org.neuronbit.xpi.common.compiler.support;
 
 import org.neuronbit.xpi.common.compiler.Compiler;
+import org.neuronbit.xpi.common.extension.AdaptiveClassCodeGenerator;
 
+import javassist.util.proxy.DefineClassHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -32,7 +43,152 @@ public abstract class AbstractCompiler implements Compiler {
 
     @Override
     public Class<?> compile(String code, ClassLoader classLoader) {
+        return compile(code, (Class<?>) null);
+    }
+
+    /**
+     * the adaptive class is defined with {@link ClassDefiner}, next to its extension interface
+     */
+    @Override
+    public Class<?> compileAdaptive(Class<?> type, String defaultExtName, ClassLoader classLoader) {
+        return compile(new AdaptiveClassCodeGenerator(type, defaultExtName).generate(), type);
+    }
+
+    /**
+     * @param type extension interface if the code is the one of its adaptive class, or null
+     */
+    private Class<?> compile(String code, Class<?> type) {
         code = code.trim();
+        String className = getClassName(code);
+        try {
+            return Class.forName(className, true, org.neuronbit.xpi.common.utils.ClassUtils.getCallerClassLoader(getClass()));
+        } catch (ClassNotFoundException e) {
+            checkCode(code);
+            try {
+                String key = BytecodeCache.key(getCompilerId(), className, code);
+                Map<String, byte[]> bytecodes = BytecodeCache.get(key);
+                if (bytecodes == null) {
+                    Map<String, byte[]> compiled = doCompileBytecode(Collections.singletonMap(className, code));
+                    if (compiled == null) {
+                        return doCompile(className, code);
+                    }
+                    bytecodes = getClassFiles(className, compiled, Collections.singleton(className));
+                    BytecodeCache.put(key, bytecodes);
+                }
+                return defineClass(className, bytecodes, type);
+            } catch (RuntimeException t) {
+                throw t;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Failed to compile class, cause: " + t.getMessage() + ", class: " + className + ", code: \n" + code + "\n, stack: " + ClassUtils.toString(t));
+            }
+        }
+    }
+
+    /**
+     * compile the sources of the classes which are neither loadable nor in the {@link BytecodeCache} with a single
+     * {@link #doCompileBytecode(Map)}, then define them
+     */
+    @Override
+    public List<Class<?>> compile(List<String> codes, ClassLoader classLoader) {
+        return compile(codes, Arrays.asList(new Class<?>[codes.size()]));
+    }
+
+    @Override
+    public Map<Class<?>, Class<?>> compileAdaptive(Map<Class<?>, String> defaultExtNames, ClassLoader classLoader) {
+        List<Class<?>> types = new ArrayList<>(defaultExtNames.keySet());
+        List<String> codes = new ArrayList<>(types.size());
+        for (Class<?> type : types) {
+            codes.add(new AdaptiveClassCodeGenerator(type, defaultExtNames.get(type)).generate());
+        }
+        List<Class<?>> classes = compile(codes, types);
+        Map<Class<?>, Class<?>> result = new LinkedHashMap<>();
+        for (int i = 0; i < types.size(); i++) {
+            result.put(types.get(i), classes.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * @param types the extension interfaces of the adaptive classes, null for the other sources
+     */
+    private List<Class<?>> compile(List<String> codes, List<Class<?>> types) {
+        ClassLoader callerClassLoader = org.neuronbit.xpi.common.utils.ClassUtils.getCallerClassLoader(getClass());
+        String[] classNames = new String[codes.size()];
+        Class<?>[] classes = new Class<?>[codes.size()];
+        // class name -> source, of the classes to compile
+        Map<String, String> sources = new LinkedHashMap<>();
+        // class name -> class files of its source
+        Map<String, Map<String, byte[]>> bytecodes = new HashMap<>();
+        for (int i = 0; i < codes.size(); i++) {
+            String code = codes.get(i).trim();
+            String className = getClassName(code);
+            classNames[i] = className;
+            try {
+                classes[i] = Class.forName(className, true, callerClassLoader);
+            } catch (ClassNotFoundException e) {
+                checkCode(code);
+                Map<String, byte[]> cached = BytecodeCache.get(BytecodeCache.key(getCompilerId(), className, code));
+                if (cached != null) {
+                    bytecodes.put(className, cached);
+                } else if (sources.put(className, code) != null) {
+                    throw new IllegalArgumentException("Duplicate class " + className + " in the sources");
+                }
+            }
+        }
+        try {
+            Map<String, byte[]> compiled = sources.isEmpty() ? null : doCompileBytecode(sources);
+            if (compiled != null) {
+                for (Map.Entry<String, String> source : sources.entrySet()) {
+                    String className = source.getKey();
+                    Map<String, byte[]> classFiles = getClassFiles(className, compiled, sources.keySet());
+                    BytecodeCache.put(BytecodeCache.key(getCompilerId(), className, source.getValue()), classFiles);
+                    bytecodes.put(className, classFiles);
+                }
+            }
+            for (int i = 0; i < classes.length; i++) {
+                if (classes[i] == null) {
+                    Map<String, byte[]> classFiles = bytecodes.get(classNames[i]);
+                    classes[i] = classFiles != null ? defineClass(classNames[i], classFiles, types.get(i)) : doCompile(classNames[i], sources.get(classNames[i]));
+                }
+            }
+        } catch (RuntimeException t) {
+            throw t;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to compile classes " + sources.keySet() + ", cause: " + t.getMessage() + ", stack: " + ClassUtils.toString(t));
+        }
+        return Arrays.asList(classes);
+    }
+
+    /**
+     * @return the class files of the given class, itself first, then its nested and anonymous classes
+     */
+    private static Map<String, byte[]> getClassFiles(String className, Map<String, byte[]> compiled, Set<String> sources) {
+        byte[] bytecode = compiled.get(className);
+        if (bytecode == null) {
+            throw new IllegalStateException("No bytecode for class " + className);
+        }
+        Map<String, byte[]> classFiles = new LinkedHashMap<>();
+        classFiles.put(className, bytecode);
+        String prefix = className + "$";
+        compiled.forEach((name, nested) -> {
+            if (name.startsWith(prefix) && !sources.contains(name)) {
+                classFiles.put(name, nested);
+            }
+        });
+        return classFiles;
+    }
+
+    private Class<?> defineClass(String name, Map<String, byte[]> bytecodes, Class<?> type) throws Throwable {
+        if (type != null && bytecodes.size() == 1) {
+            Class<?> clazz = ClassDefiner.defineAdaptiveClass(type, name, bytecodes.get(name));
+            if (clazz != null) {
+                return clazz;
+            }
+        }
+        return defineClass(name, bytecodes);
+    }
+
+    private static String getClassName(String code) {
         Matcher matcher = PACKAGE_PATTERN.matcher(code);
         String pkg;
         if (matcher.find()) {
@@ -47,23 +203,77 @@ public abstract class AbstractCompiler implements Compiler {
         } else {
             throw new IllegalArgumentException("No such class name in " + code);
         }
-        String className = pkg != null && pkg.length() > 0 ? pkg + "." + cls : cls;
-        try {
-            return Class.forName(className, true, org.neuronbit.xpi.common.utils.ClassUtils.getCallerClassLoader(getClass()));
-        } catch (ClassNotFoundException e) {
-            if (!code.endsWith("}")) {
-                throw new IllegalStateException("The java code not endsWith \"}\", code: \n" + code + "\n");
-            }
-            try {
-                return doCompile(className, code);
-            } catch (RuntimeException t) {
-                throw t;
-            } catch (Throwable t) {
-                throw new IllegalStateException("Failed to compile class, cause: " + t.getMessage() + ", class: " + className + ", code: \n" + code + "\n, stack: " + ClassUtils.toString(t));
-            }
+        return pkg != null && pkg.length() > 0 ? pkg + "." + cls : cls;
+    }
+
+    private static void checkCode(String code) {
+        if (!code.endsWith("}")) {
+            throw new IllegalStateException("The java code not endsWith \"}\", code: \n" + code + "\n");
         }
     }
 
     protected abstract Class<?> doCompile(String name, String source) throws Throwable;
 
+    /**
+     * @return identity of the compiler and of its options in the {@link BytecodeCache}
+     */
+    protected String getCompilerId() {
+        return getClass().getName();
+    }
+
+    /**
+     * compile the source without defining the class, so the bytecode can be cached in {@link BytecodeCache}
+     *
+     * @return the bytecode, or null if the compiler only supports {@link #doCompile(String, String)}
+     */
+    protected byte[] doCompileBytecode(String name, String source) throws Throwable {
+        return null;
+    }
+
+    /**
+     * compile several sources without defining the classes, by default one by one with
+     * {@link #doCompileBytecode(String, String)}, or with {@link #doCompile(String, String)} if the compiler does not
+     * support it
+     *
+     * @param sources class name -> source
+     * @return class name -> bytecode, the nested and anonymous classes of the sources included, or null if the
+     * compiler only supports {@link #doCompile(String, String)}
+     */
+    protected Map<String, byte[]> doCompileBytecode(Map<String, String> sources) throws Throwable {
+        Map<String, byte[]> bytecodes = new HashMap<>();
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            byte[] bytecode = doCompileBytecode(source.getKey(), source.getValue());
+            if (bytecode == null) {
+                return null;
+            }
+            bytecodes.put(source.getKey(), bytecode);
+        }
+        return bytecodes;
+    }
+
+    /**
+     * define the class compiled by {@link #doCompileBytecode(String, String)}, by default in the class loader of the
+     * compiler, unless it is an adaptive class defined by {@link ClassDefiner}
+     */
+    protected Class<?> defineClass(String name, byte[] bytecode) throws Throwable {
+        ClassLoader classLoader = org.neuronbit.xpi.common.utils.ClassUtils.getCallerClassLoader(getClass());
+        return DefineClassHelper.toClass(name, null, classLoader, getClass().getProtectionDomain(), bytecode);
+    }
+
+    /**
+     * define the class and its nested classes compiled by {@link #doCompileBytecode(Map)}, by default one by one with
+     * {@link #defineClass(String, byte[])}
+     *
+     * @param bytecodes class name -> bytecode, the given class first
+     */
+    protected Class<?> defineClass(String name, Map<String, byte[]> bytecodes) throws Throwable {
+        Class<?> clazz = defineClass(name, bytecodes.get(name));
+        for (Map.Entry<String, byte[]> nested : bytecodes.entrySet()) {
+            if (!name.equals(nested.getKey())) {
+                defineClass(nested.getKey(), nested.getValue());
+            }
+        }
+        return clazz;
+    }
+
 }
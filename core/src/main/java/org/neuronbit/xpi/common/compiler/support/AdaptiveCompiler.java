@@ -20,6 +20,9 @@ import org.neuronbit.xpi.common.compiler.Compiler;
 import org.neuronbit.xpi.common.extension.Adaptive;
 import org.neuronbit.xpi.common.extension.ExtensionFactory;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * AdaptiveCompiler. (SPI, Singleton, ThreadSafe)
  */
@@ -34,15 +37,32 @@ public class AdaptiveCompiler implements Compiler {
 
     @Override
     public Class<?> compile(String code, ClassLoader classLoader) {
-        Compiler compiler;
+        return getCompiler().compile(code, classLoader);
+    }
+
+    @Override
+    public Class<?> compileAdaptive(Class<?> type, String defaultExtName, ClassLoader classLoader) {
+        return getCompiler().compileAdaptive(type, defaultExtName, classLoader);
+    }
+
+    @Override
+    public List<Class<?>> compile(List<String> codes, ClassLoader classLoader) {
+        return getCompiler().compile(codes, classLoader);
+    }
+
+    @Override
+    public Map<Class<?>, Class<?>> compileAdaptive(Map<Class<?>, String> defaultExtNames, ClassLoader classLoader) {
+        return getCompiler().compileAdaptive(defaultExtNames, classLoader);
+    }
+
+    private Compiler getCompiler() {
         ExtensionFactory<Compiler> loader = ExtensionFactory.getExtensionFactory(Compiler.class);
         String name = DEFAULT_COMPILER; // copy reference
         if (name != null && name.length() > 0) {
-            compiler = loader.getExtension(name);
+            return loader.getExtension(name);
         } else {
-            compiler = loader.getDefaultExtension();
+            return loader.getDefaultExtension();
         }
-        return compiler.compile(code, classLoader);
     }
 
 }
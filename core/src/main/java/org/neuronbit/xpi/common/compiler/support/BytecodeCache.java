@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.compiler.support;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bytecode of the compiled classes, by hash of the compiler and the source, shared by all the compilers. The class
+ * files of a source are cached together: the top level class first, then its nested and anonymous classes.
+ * <p>
+ * A source compiled again, by a compiler of another extension factory or for another class loader, is defined from
+ * the cached bytecode instead of being compiled. At most {@link #CAPACITY} sources are cached.
+ */
+public final class BytecodeCache {
+
+    static final int CAPACITY = 1024;
+
+    private static final ConcurrentMap<String, Map<String, byte[]>> CACHE = new ConcurrentHashMap<>();
+
+    private BytecodeCache() {
+    }
+
+    /**
+     * @param compiler  compiler of the source and its options, the same source compiled by different compilers is
+     *                  cached twice
+     * @param className name of the compiled class
+     * @param source    java source
+     * @return the cache key
+     */
+    public static String key(String compiler, String className, String source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        digest.update(compiler.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(className.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(source.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @return a copy of the cached class files of the source, by class name, or null if not cached
+     */
+    public static Map<String, byte[]> get(String key) {
+        Map<String, byte[]> bytecodes = CACHE.get(key);
+        return bytecodes == null ? null : copy(bytecodes);
+    }
+
+    /**
+     * @param bytecodes the class files of the source by class name, the top level class first
+     */
+    public static void put(String key, Map<String, byte[]> bytecodes) {
+        if (CACHE.size() < CAPACITY) {
+            CACHE.putIfAbsent(key, Collections.unmodifiableMap(copy(bytecodes)));
+        }
+    }
+
+    private static Map<String, byte[]> copy(Map<String, byte[]> bytecodes) {
+        Map<String, byte[]> copy = new LinkedHashMap<>();
+        bytecodes.forEach((name, bytecode) -> copy.put(name, bytecode.clone()));
+        return copy;
+    }
+
+    public static int size() {
+        return CACHE.size();
+    }
+
+    public static void clear() {
+        CACHE.clear();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.compiler.support;
+
+import org.neuronbit.xpi.common.extension.AdaptiveClassBytecodeGenerator;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+
+/**
+ * BytecodeCompiler, emits the bytecode of adaptive classes directly with {@link AdaptiveClassBytecodeGenerator},
+ * other java source is compiled as {@link JavassistCompiler} does. (SPI, Singleton, ThreadSafe)
+ */
+public class BytecodeCompiler extends JavassistCompiler {
+
+    @Override
+    public Class<?> compileAdaptive(Class<?> type, String defaultExtName, ClassLoader classLoader) {
+        AdaptiveClassBytecodeGenerator generator = new AdaptiveClassBytecodeGenerator(type, defaultExtName);
+        ClassLoader callerClassLoader = org.neuronbit.xpi.common.utils.ClassUtils.getCallerClassLoader(getClass());
+        try {
+            return Class.forName(generator.getClassName(), true, callerClassLoader);
+        } catch (ClassNotFoundException e) {
+            try {
+                ClassPool pool = ClassPools.newClassPool(callerClassLoader);
+                CtClass cls = generator.generate(pool);
+                Class<?> clazz = ClassDefiner.defineAdaptiveClass(type, generator.getClassName(), cls.toBytecode());
+                return clazz != null ? clazz : cls.toClass(callerClassLoader, BytecodeCompiler.class.getProtectionDomain());
+            } catch (RuntimeException t) {
+                throw t;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Failed to generate adaptive class, cause: " + t.getMessage() + ", class: "
+                                                        + generator.getClassName() + ", stack: " + ClassUtils.toString(t));
+            }
+        }
+    }
+
+}
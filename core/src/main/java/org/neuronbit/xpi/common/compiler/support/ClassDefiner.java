@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.compiler.support;
+
+import org.neuronbit.xpi.common.logger.Logger;
+import org.neuronbit.xpi.common.logger.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+
+/**
+ * Definition of the generated adaptive classes with {@link MethodHandles.Lookup}, in the package and the class loader
+ * of their extension interface.
+ * <p>
+ * The strategy is selected with the system property {@link #ADAPTIVE_DEFINE_PROPERTY}:
+ * <ul>
+ *     <li>{@link #LOOKUP}, the default: <code>Lookup.defineClass</code>, the adaptive class is a normal class of the
+ *     class loader of the interface, without reflective access to <code>ClassLoader.defineClass</code></li>
+ *     <li>{@link #HIDDEN}: <code>Lookup.defineHiddenClass</code>, the adaptive class can't be found by name and is
+ *     unloaded once its extension factory is reset and its instance is no longer referenced</li>
+ *     <li>{@link #CLASS_LOADER}: the compiler defines the class itself, in its own class loader</li>
+ * </ul>
+ * The methods of <code>Lookup</code> are looked up reflectively. When they are not available, on Java 8 for instance,
+ * or for {@link #HIDDEN} before Java 15, the next strategy of the list is used.
+ */
+public final class ClassDefiner {
+    private static final Logger logger = LoggerFactory.getLogger(ClassDefiner.class);
+
+    public static final String ADAPTIVE_DEFINE_PROPERTY = "xpi.adaptive.define";
+
+    public static final String LOOKUP = "lookup";
+
+    public static final String HIDDEN = "hidden";
+
+    public static final String CLASS_LOADER = "classloader";
+
+    /**
+     * MethodHandles.privateLookupIn(Class, Lookup), since Java 9
+     */
+    private static final MethodHandle PRIVATE_LOOKUP_IN;
+
+    /**
+     * Lookup.defineClass(byte[]), since Java 9
+     */
+    private static final MethodHandle DEFINE_CLASS;
+
+    /**
+     * Lookup.defineHiddenClass(byte[], boolean, ClassOption...), since Java 15
+     */
+    private static final MethodHandle DEFINE_HIDDEN_CLASS;
+
+    /**
+     * empty ClassOption[], the hidden classes are not strongly linked to their class loader so they can be unloaded
+     */
+    private static final Object NO_CLASS_OPTIONS;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodHandle privateLookupIn = null;
+        MethodHandle defineClass = null;
+        MethodHandle defineHiddenClass = null;
+        Object noClassOptions = null;
+        try {
+            privateLookupIn = lookup.findStatic(MethodHandles.class, "privateLookupIn",
+                    MethodType.methodType(MethodHandles.Lookup.class, Class.class, MethodHandles.Lookup.class));
+            defineClass = lookup.findVirtual(MethodHandles.Lookup.class, "defineClass",
+                    MethodType.methodType(Class.class, byte[].class));
+            Class<?> classOption = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            noClassOptions = Array.newInstance(classOption, 0);
+            defineHiddenClass = lookup.findVirtual(MethodHandles.Lookup.class, "defineHiddenClass",
+                    MethodType.methodType(MethodHandles.Lookup.class, byte[].class, boolean.class, noClassOptions.getClass())).asFixedArity();
+        } catch (ReflectiveOperationException e) {
+            // older java version, the remaining strategies fall back to the class loader
+        }
+        PRIVATE_LOOKUP_IN = privateLookupIn;
+        DEFINE_CLASS = defineClass;
+        DEFINE_HIDDEN_CLASS = defineHiddenClass;
+        NO_CLASS_OPTIONS = noClassOptions;
+    }
+
+    private ClassDefiner() {
+    }
+
+    /**
+     * @return the strategy set with {@link #ADAPTIVE_DEFINE_PROPERTY}, downgraded to the one supported by the running
+     * java version
+     */
+    public static String getStrategy() {
+        String strategy = System.getProperty(ADAPTIVE_DEFINE_PROPERTY, LOOKUP);
+        if (HIDDEN.equals(strategy) && DEFINE_HIDDEN_CLASS != null) {
+            return HIDDEN;
+        }
+        if ((HIDDEN.equals(strategy) || LOOKUP.equals(strategy)) && DEFINE_CLASS != null) {
+            return LOOKUP;
+        }
+        if (!CLASS_LOADER.equals(strategy) && !HIDDEN.equals(strategy) && !LOOKUP.equals(strategy)) {
+            logger.warn("Unknown adaptive class definition strategy " + strategy + ", the class loader is used.");
+        }
+        return CLASS_LOADER;
+    }
+
+    /**
+     * Define the adaptive class of the given extension interface with the selected strategy.
+     *
+     * @param type      extension interface, the adaptive class must be in its package
+     * @param className name of the adaptive class
+     * @param bytecode  bytecode of the adaptive class
+     * @return the adaptive class, or <code>null</code> if the strategy is {@link #CLASS_LOADER} or the package of the
+     * interface is not accessible, and the caller has to define the class itself
+     */
+    public static Class<?> defineAdaptiveClass(Class<?> type, String className, byte[] bytecode) throws Throwable {
+        String strategy = getStrategy();
+        if (CLASS_LOADER.equals(strategy)) {
+            return null;
+        }
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = (MethodHandles.Lookup) PRIVATE_LOOKUP_IN.invoke(type, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            // package of a named module not opened to xpi
+            if (logger.isDebugEnabled()) {
+                logger.debug("No private access to " + type.getName() + ", the adaptive class " + className + " is defined by the compiler.", e);
+            }
+            return null;
+        }
+        if (HIDDEN.equals(strategy)) {
+            return ((MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke(lookup, bytecode, true, NO_CLASS_OPTIONS)).lookupClass();
+        }
+        try {
+            return (Class<?>) DEFINE_CLASS.invoke(lookup, bytecode);
+        } catch (LinkageError e) {
+            try {
+                // defined by another compiler or another extension factory of the interface
+                return Class.forName(className, true, type.getClassLoader());
+            } catch (ClassNotFoundException notFound) {
+                throw e;
+            }
+        }
+    }
+}
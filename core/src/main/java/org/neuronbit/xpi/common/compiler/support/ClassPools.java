@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.compiler.support;
+
+import javassist.ClassPool;
+import javassist.LoaderClassPath;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Javassist class pools shared per class loader.
+ * <p>
+ * A class pool caches the classes it has read from the class path, {@link #getClassPool(ClassLoader)} is kept for
+ * the life of the class loader so the classes referred to by the generated classes are read once. The generated
+ * classes and the imported packages go to a child pool created by {@link #newClassPool(ClassLoader)}, which is
+ * dropped once the class is built.
+ */
+public final class ClassPools {
+
+    private static final Map<ClassLoader, ClassPool> POOLS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private ClassPools() {
+    }
+
+    /**
+     * @param classLoader class loader, <code>null</code> means the system class loader
+     * @return the pool of the system classes and of the classes visible to the class loader
+     */
+    public static ClassPool getClassPool(ClassLoader classLoader) {
+        if (classLoader == null) {
+            classLoader = ClassLoader.getSystemClassLoader();
+        }
+        ClassPool pool = POOLS.get(classLoader);
+        if (pool == null) {
+            synchronized (POOLS) {
+                pool = POOLS.get(classLoader);
+                if (pool == null) {
+                    pool = new ClassPool(true);
+                    pool.appendClassPath(new LoaderClassPath(classLoader));
+                    POOLS.put(classLoader, pool);
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * drop the pool of the class loader, before the class loader is released
+     */
+    public static void remove(ClassLoader classLoader) {
+        if (classLoader != null) {
+            POOLS.remove(classLoader);
+        }
+    }
+
+    /**
+     * @return a new pool to build one class, delegating to the shared pool of the class loader
+     */
+    public static ClassPool newClassPool(ClassLoader classLoader) {
+        return new ClassPool(getClassPool(classLoader));
+    }
+}
@@ -132,9 +132,9 @@ public class CtClassBuilder {
      * build CtClass object
      */
     public CtClass build(ClassLoader classLoader) throws NotFoundException, CannotCompileException {
-        ClassPool pool = new ClassPool(true);
-        pool.appendClassPath(new LoaderClassPath(classLoader));
-        
+        // imports and the built class stay in a pool of their own
+        ClassPool pool = ClassPools.newClassPool(classLoader);
+
         // create class
         CtClass ctClass = pool.makeClass(className, pool.get(superClassName));
 
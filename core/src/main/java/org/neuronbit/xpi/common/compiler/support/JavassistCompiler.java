@@ -18,6 +18,7 @@ package org.neuronbit.xpi.common.compiler.support;
 
 
 import javassist.CtClass;
+import javassist.util.proxy.DefineClassHelper;
 
 import java.util.Arrays;
 import java.util.regex.Matcher;
@@ -38,8 +39,18 @@ public class JavassistCompiler extends AbstractCompiler {
 
     private static final Pattern FIELD_PATTERN = Pattern.compile("[^\n]+=[^\n]+;");
 
+    /**
+     * type arguments, erased from the fields since javassist doesn't compile generics
+     */
+    private static final Pattern TYPE_ARGUMENTS_PATTERN = Pattern.compile("<[\\w\\.$,\\s]*>");
+
     @Override
     public Class<?> doCompile(String name, String source) throws Throwable {
+        return defineClass(name, doCompileBytecode(name, source));
+    }
+
+    @Override
+    protected byte[] doCompileBytecode(String name, String source) throws Throwable {
         CtClassBuilder builder = new CtClassBuilder();
         builder.setClassName(name);
 
@@ -70,7 +81,7 @@ public class JavassistCompiler extends AbstractCompiler {
             if (method.startsWith(className)) {
                 builder.addConstructor("public " + method);
             } else if (FIELD_PATTERN.matcher(method).matches()) {
-                builder.addField("private " + method);
+                builder.addField("private " + TYPE_ARGUMENTS_PATTERN.matcher(method).replaceAll(""));
             } else {
                 builder.addMethod("public " + method);
             }
@@ -79,7 +90,13 @@ public class JavassistCompiler extends AbstractCompiler {
         // compile
         ClassLoader classLoader = org.neuronbit.xpi.common.utils.ClassUtils.getCallerClassLoader(getClass());
         CtClass cls = builder.build(classLoader);
-        return cls.toClass(classLoader, JavassistCompiler.class.getProtectionDomain());
+        return cls.toBytecode();
+    }
+
+    @Override
+    protected Class<?> defineClass(String name, byte[] bytecode) throws Throwable {
+        ClassLoader classLoader = org.neuronbit.xpi.common.utils.ClassUtils.getCallerClassLoader(getClass());
+        return DefineClassHelper.toClass(name, null, classLoader, JavassistCompiler.class.getProtectionDomain(), bytecode);
     }
 
 }
@@ -90,16 +90,58 @@ public class JdkCompiler extends AbstractCompiler {
 
     @Override
     public Class<?> doCompile(String name, String sourceCode) throws Throwable {
-        int i = name.lastIndexOf('.');
-        String packageName = i < 0 ? "" : name.substring(0, i);
-        String className = i < 0 ? name : name.substring(i + 1);
-        JavaFileObjectImpl javaFileObject = new JavaFileObjectImpl(className, sourceCode);
-        javaFileManager.putFileForInput(StandardLocation.SOURCE_PATH, packageName,
-                className + ClassUtils.JAVA_EXTENSION, javaFileObject);
+        return defineClass(name, doCompileBytecode(Collections.singletonMap(name, sourceCode)));
+    }
+
+    /**
+     * compile all the sources in a single compilation task, so javac starts once
+     */
+    @Override
+    protected Map<String, byte[]> doCompileBytecode(Map<String, String> sources) throws Throwable {
+        List<JavaFileObject> javaFileObjects = new ArrayList<>(sources.size());
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            String name = source.getKey();
+            int i = name.lastIndexOf('.');
+            String packageName = i < 0 ? "" : name.substring(0, i);
+            String className = i < 0 ? name : name.substring(i + 1);
+            JavaFileObjectImpl javaFileObject = new JavaFileObjectImpl(className, source.getValue());
+            javaFileManager.putFileForInput(StandardLocation.SOURCE_PATH, packageName,
+                    className + ClassUtils.JAVA_EXTENSION, javaFileObject);
+            javaFileObjects.add(javaFileObject);
+        }
         Boolean result = compiler.getTask(null, javaFileManager, diagnosticCollector, options,
-                null, Collections.singletonList(javaFileObject)).call();
+                null, javaFileObjects).call();
         if (result == null || !result) {
-            throw new IllegalStateException("Compilation failed. class: " + name + ", diagnostics: " + diagnosticCollector);
+            throw new IllegalStateException("Compilation failed. classes: " + sources.keySet() + ", diagnostics: " + diagnosticCollector);
+        }
+        Map<String, byte[]> bytecodes = new HashMap<>();
+        for (String name : sources.keySet()) {
+            // only kept by the class loader of this compiler if defined there, see defineClass
+            bytecodes.put(name, classLoader.removeByteCode(name));
+            bytecodes.putAll(classLoader.removeNestedByteCodes(name, sources.keySet()));
+        }
+        return bytecodes;
+    }
+
+    @Override
+    protected String getCompilerId() {
+        return super.getCompilerId() + options;
+    }
+
+    /**
+     * define the class in the class loader of this compiler, the adaptive classes defined next to their extension
+     * interface by {@link ClassDefiner} are not kept by this compiler and can be unloaded
+     */
+    @Override
+    protected Class<?> defineClass(String name, byte[] bytecode) throws Throwable {
+        classLoader.addIfAbsent(name, bytecode);
+        return classLoader.loadClass(name);
+    }
+
+    @Override
+    protected Class<?> defineClass(String name, Map<String, byte[]> bytecodes) throws Throwable {
+        for (Map.Entry<String, byte[]> bytecode : bytecodes.entrySet()) {
+            classLoader.addIfAbsent(bytecode.getKey(), bytecode.getValue());
         }
         return classLoader.loadClass(name);
     }
@@ -259,6 +301,41 @@ public class JdkCompiler extends AbstractCompiler {
             classes.put(qualifiedClassName, javaFile);
         }
 
+        synchronized void addIfAbsent(final String qualifiedClassName, final byte[] bytecode) throws IOException {
+            if (!classes.containsKey(qualifiedClassName)) {
+                JavaFileObjectImpl file = new JavaFileObjectImpl(qualifiedClassName, Kind.CLASS);
+                try (OutputStream out = file.openOutputStream()) {
+                    out.write(bytecode);
+                }
+                classes.put(qualifiedClassName, file);
+            }
+        }
+
+        synchronized byte[] removeByteCode(final String qualifiedClassName) throws ClassNotFoundException {
+            JavaFileObjectImpl file = (JavaFileObjectImpl) classes.remove(qualifiedClassName);
+            if (file == null) {
+                throw new ClassNotFoundException(qualifiedClassName);
+            }
+            return file.getByteCode();
+        }
+
+        /**
+         * @return the bytecode of the nested and anonymous classes of the given class, other than the given sources
+         */
+        synchronized Map<String, byte[]> removeNestedByteCodes(final String qualifiedClassName, final Set<String> sources) {
+            Map<String, byte[]> bytecodes = new HashMap<>();
+            String prefix = qualifiedClassName + "$";
+            Iterator<Map.Entry<String, JavaFileObject>> iterator = classes.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, JavaFileObject> entry = iterator.next();
+                if (entry.getKey().startsWith(prefix) && !sources.contains(entry.getKey())) {
+                    bytecodes.put(entry.getKey(), ((JavaFileObjectImpl) entry.getValue()).getByteCode());
+                    iterator.remove();
+                }
+            }
+            return bytecodes;
+        }
+
         @Override
         protected synchronized Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
             return super.loadClass(name, resolve);
@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension;
+
+import org.neuronbit.xpi.common.utils.ReflectUtils;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.BadBytecode;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.ExceptionsAttribute;
+import javassist.bytecode.FieldInfo;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bytecode generator for Adaptive class, builds the same class as {@link AdaptiveClassCodeGenerator} straight from
+ * the {@link Method} metadata, without generating and parsing java source.
+ */
+public class AdaptiveClassBytecodeGenerator {
+
+    private static final String DISPATCHER = AdaptiveExtensionDispatcher.class.getName();
+
+    private static final String DISPATCHER_FIELD = "dispatcher";
+
+    private static final String DISPATCHER_DESC = ReflectUtils.getDesc(AdaptiveExtensionDispatcher.class);
+
+    private static final String GET_EXTENSION_DESC = "(Ljava/lang/String;)Ljava/lang/Object;";
+
+    private static final String GETTER_DESC = "()Ljava/lang/String;";
+
+    private static final String EXCEPTION_CONSTRUCTOR_DESC = "(Ljava/lang/String;)V";
+
+    private final Class<?> type;
+
+    private final String defaultExtName;
+
+    public AdaptiveClassBytecodeGenerator(Class<?> type, String defaultExtName) {
+        this.type = type;
+        this.defaultExtName = defaultExtName;
+    }
+
+    /**
+     * @return name of the adaptive class, the same as the one of the generated source
+     */
+    public String getClassName() {
+        return type.getPackage().getName() + "." + type.getSimpleName() + "$Adaptive";
+    }
+
+    /**
+     * generate the adaptive class into the given pool
+     *
+     * @throws IllegalStateException if the adaptive class can't be generated
+     */
+    public CtClass generate(ClassPool pool) throws CannotCompileException, BadBytecode {
+        if (Arrays.stream(type.getMethods()).noneMatch(m -> m.isAnnotationPresent(Adaptive.class))) {
+            throw new IllegalStateException("No adaptive method exist on extension " + type.getName() + ", refuse to create the adaptive class!");
+        }
+
+        ClassFile classFile = new ClassFile(false, getClassName(), Object.class.getName());
+        classFile.setMajorVersion(ClassFile.JAVA_8);
+        classFile.setAccessFlags(AccessFlag.PUBLIC | AccessFlag.SUPER);
+        classFile.setInterfaces(new String[]{type.getName()});
+        ConstPool cp = classFile.getConstPool();
+
+        FieldInfo dispatcher = new FieldInfo(cp, DISPATCHER_FIELD, DISPATCHER_DESC);
+        dispatcher.setAccessFlags(AccessFlag.PRIVATE | AccessFlag.FINAL);
+        classFile.addField(dispatcher);
+        classFile.addMethod(generateConstructor(cp));
+        Set<String> signatures = new HashSet<>();
+        for (Method method : type.getMethods()) {
+            String desc = ReflectUtils.getDescWithoutMethodName(method);
+            if (signatures.add(method.getName() + desc)) {
+                classFile.addMethod(generateMethod(cp, method, desc));
+            }
+        }
+
+        // stack maps refer to the generated class, which must be known by the pool
+        CtClass ctClass = pool.makeClass(classFile);
+        for (MethodInfo methodInfo : classFile.getMethods()) {
+            methodInfo.rebuildStackMap(pool);
+        }
+        return ctClass;
+    }
+
+    private MethodInfo generateConstructor(ConstPool cp) throws BadBytecode {
+        Bytecode code = new Bytecode(cp, 0, 1);
+        code.addAload(0);
+        code.addInvokespecial(Object.class.getName(), MethodInfo.nameInit, "()V");
+        // this.dispatcher = new AdaptiveExtensionDispatcher(T.class)
+        code.addAload(0);
+        code.addNew(DISPATCHER);
+        code.addOpcode(Opcode.DUP);
+        code.addLdc(cp.addClassInfo(type.getName()));
+        code.addInvokespecial(DISPATCHER, MethodInfo.nameInit, "(Ljava/lang/Class;)V");
+        code.addPutfield(getClassName(), DISPATCHER_FIELD, DISPATCHER_DESC);
+        code.addOpcode(Opcode.RETURN);
+        MethodInfo methodInfo = new MethodInfo(cp, MethodInfo.nameInit, "()V");
+        methodInfo.setAccessFlags(AccessFlag.PUBLIC);
+        CodeAttribute codeAttribute = code.toCodeAttribute();
+        codeAttribute.computeMaxStack();
+        methodInfo.setCodeAttribute(codeAttribute);
+        return methodInfo;
+    }
+
+    private MethodInfo generateMethod(ConstPool cp, Method method, String desc) throws BadBytecode {
+        Class<?>[] pts = method.getParameterTypes();
+        int[] slots = new int[pts.length];
+        int nextSlot = 1;
+        for (int i = 0; i < pts.length; i++) {
+            slots[i] = nextSlot;
+            nextSlot += isWide(pts[i]) ? 2 : 1;
+        }
+        int extNameSlot = nextSlot;
+        int valueSlot = nextSlot + 1;
+
+        Bytecode code = new Bytecode(cp, 0, valueSlot + 1);
+        Adaptive adaptiveAnnotation = method.getAnnotation(Adaptive.class);
+        if (adaptiveAnnotation == null) {
+            addThrow(code, UnsupportedOperationException.class,
+                    String.format("The method %s of interface %s is not adaptive method!", method, type.getName()));
+        } else {
+            String[] value = AdaptiveClassCodeGenerator.getMethodAdaptiveValue(type, adaptiveAnnotation);
+            LinkedHashMap<String, Integer> getters = AdaptiveClassCodeGenerator.findExtNameGetters(method, value);
+            if (getters.size() <= 0) {
+                throw new IllegalStateException("Failed to create adaptive class for interface " + type.getName()
+                                                        + ": not found url parameter or url attribute in parameters of method " + method.getName());
+            }
+
+            // String extName = defaultExtName
+            if (defaultExtName == null) {
+                code.addOpcode(Opcode.ACONST_NULL);
+            } else {
+                code.addLdc(defaultExtName);
+            }
+            code.addAstore(extNameSlot);
+
+            // if (argi != null && argi.getXxx() != null) extName = argi.getXxx()
+            for (Map.Entry<String, Integer> getter : getters.entrySet()) {
+                Class<?> pt = pts[getter.getValue()];
+                int slot = slots[getter.getValue()];
+                code.addAload(slot);
+                int argNullJump = addJump(code, Opcode.IFNULL);
+                code.addAload(slot);
+                if (pt.isInterface()) {
+                    code.addInvokeinterface(pt.getName(), getter.getKey(), GETTER_DESC, 1);
+                } else {
+                    code.addInvokevirtual(pt.getName(), getter.getKey(), GETTER_DESC);
+                }
+                code.addAstore(valueSlot);
+                code.addAload(valueSlot);
+                int valueNullJump = addJump(code, Opcode.IFNULL);
+                code.addAload(valueSlot);
+                code.addAstore(extNameSlot);
+                bindJump(code, argNullJump);
+                bindJump(code, valueNullJump);
+            }
+
+            // if (extName == null) throw new IllegalStateException(...)
+            code.addAload(extNameSlot);
+            int extNameJump = addJump(code, Opcode.IFNONNULL);
+            addThrow(code, IllegalStateException.class, String.format("Failed to get extension (%s) name from parameters by keys(%s)",
+                    type.getName(), Arrays.toString(value)));
+            bindJump(code, extNameJump);
+
+            // return ((T) dispatcher.getExtension(extName)).method(args)
+            code.addAload(0);
+            code.addGetfield(getClassName(), DISPATCHER_FIELD, DISPATCHER_DESC);
+            code.addAload(extNameSlot);
+            code.addInvokevirtual(DISPATCHER, "getExtension", GET_EXTENSION_DESC);
+            code.addCheckcast(type.getName());
+            for (int i = 0; i < pts.length; i++) {
+                addLoad(code, pts[i], slots[i]);
+            }
+            code.addInvokeinterface(type.getName(), method.getName(), desc, nextSlot);
+            addReturn(code, method.getReturnType());
+        }
+
+        MethodInfo methodInfo = new MethodInfo(cp, method.getName(), desc);
+        methodInfo.setAccessFlags(AccessFlag.PUBLIC);
+        CodeAttribute codeAttribute = code.toCodeAttribute();
+        codeAttribute.computeMaxStack();
+        methodInfo.setCodeAttribute(codeAttribute);
+        if (method.getExceptionTypes().length > 0) {
+            ExceptionsAttribute exceptions = new ExceptionsAttribute(cp);
+            exceptions.setExceptions(Arrays.stream(method.getExceptionTypes()).map(Class::getName).toArray(String[]::new));
+            methodInfo.setExceptionsAttribute(exceptions);
+        }
+        return methodInfo;
+    }
+
+    private static void addThrow(Bytecode code, Class<? extends RuntimeException> exception, String message) {
+        code.addNew(exception.getName());
+        code.addOpcode(Opcode.DUP);
+        code.addLdc(message);
+        code.addInvokespecial(exception.getName(), MethodInfo.nameInit, EXCEPTION_CONSTRUCTOR_DESC);
+        code.addOpcode(Opcode.ATHROW);
+    }
+
+    /**
+     * add a branch instruction whose target is set by {@link #bindJump(Bytecode, int)}
+     *
+     * @return position of the branch instruction
+     */
+    private static int addJump(Bytecode code, int opcode) {
+        int pc = code.currentPc();
+        code.addOpcode(opcode);
+        code.addIndex(0);
+        return pc;
+    }
+
+    /**
+     * make the branch instruction at the given position jump to the current position
+     */
+    private static void bindJump(Bytecode code, int jump) {
+        code.write16bit(jump + 1, code.currentPc() - jump);
+    }
+
+    private static boolean isWide(Class<?> type) {
+        return type == long.class || type == double.class;
+    }
+
+    private static void addLoad(Bytecode code, Class<?> type, int slot) {
+        if (!type.isPrimitive()) {
+            code.addAload(slot);
+        } else if (type == long.class) {
+            code.addLload(slot);
+        } else if (type == double.class) {
+            code.addDload(slot);
+        } else if (type == float.class) {
+            code.addFload(slot);
+        } else {
+            code.addIload(slot);
+        }
+    }
+
+    private static void addReturn(Bytecode code, Class<?> type) {
+        if (type == void.class) {
+            code.addOpcode(Opcode.RETURN);
+        } else if (!type.isPrimitive()) {
+            code.addOpcode(Opcode.ARETURN);
+        } else if (type == long.class) {
+            code.addOpcode(Opcode.LRETURN);
+        } else if (type == double.class) {
+            code.addOpcode(Opcode.DRETURN);
+        } else if (type == float.class) {
+            code.addOpcode(Opcode.FRETURN);
+        } else {
+            code.addOpcode(Opcode.IRETURN);
+        }
+    }
+}
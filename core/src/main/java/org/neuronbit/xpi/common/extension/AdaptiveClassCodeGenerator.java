@@ -41,6 +41,8 @@ public class AdaptiveClassCodeGenerator {
 
     private static final String CODE_CLASS_DECLARATION = "public class %s$Adaptive implements %s {\n";
 
+    private static final String CODE_DISPATCHER_FIELD = "private final %1$s<%2$s> dispatcher = new %1$s<%2$s>(%2$s.class);\n";
+
     private static final String CODE_METHOD_DECLARATION = "public %s %s(%s) %s {\n%s}\n";
 
     private static final String CODE_METHOD_ARGUMENT = "%s arg%d";
@@ -60,7 +62,7 @@ public class AdaptiveClassCodeGenerator {
                                                                               + "String methodName = arg%d.getMethodName();\n";
 
 
-    private static final String CODE_EXTENSION_ASSIGNMENT = "%s extension = (%<s)%s.getExtensionFactory(%s.class).getExtension(extName);\n";
+    private static final String CODE_EXTENSION_ASSIGNMENT = "%s extension = dispatcher.getExtension(extName);\n";
 
     private static final String CODE_EXTENSION_METHOD_INVOKE_ARGUMENT = "arg%d";
 
@@ -93,6 +95,7 @@ public class AdaptiveClassCodeGenerator {
         code.append(generatePackageInfo());
         code.append(generateImports());
         code.append(generateClassDeclaration());
+        code.append(generateDispatcherField());
 
         Method[] methods = type.getMethods();
         for (Method method : methods) {
@@ -117,7 +120,7 @@ public class AdaptiveClassCodeGenerator {
      * generate imports
      */
     private String generateImports() {
-        return String.format(CODE_IMPORTS, ExtensionFactory.class.getName());
+        return String.format(CODE_IMPORTS, AdaptiveExtensionDispatcher.class.getName());
     }
 
     /**
@@ -127,6 +130,13 @@ public class AdaptiveClassCodeGenerator {
         return String.format(CODE_CLASS_DECLARATION, type.getSimpleName(), type.getCanonicalName());
     }
 
+    /**
+     * generate the field of the dispatcher which caches the extensions
+     */
+    private String generateDispatcherField() {
+        return String.format(CODE_DISPATCHER_FIELD, AdaptiveExtensionDispatcher.class.getName(), type.getName());
+    }
+
     /**
      * generate method not annotated with Adaptive with throwing unsupported exception
      */
@@ -209,7 +219,7 @@ public class AdaptiveClassCodeGenerator {
         if (adaptiveAnnotation == null) {
             return generateUnsupported(method);
         } else {
-            String[] value = getMethodAdaptiveValue(adaptiveAnnotation);
+            String[] value = getMethodAdaptiveValue(type, adaptiveAnnotation);
 
             code.append(generateUrlAssignmentIndirectly(method, value));
 
@@ -258,7 +268,7 @@ public class AdaptiveClassCodeGenerator {
      * @return
      */
     private String generateExtensionAssignment() {
-        return String.format(CODE_EXTENSION_ASSIGNMENT, type.getName(), ExtensionFactory.class.getSimpleName(), type.getName());
+        return String.format(CODE_EXTENSION_ASSIGNMENT, type.getName());
     }
 
     /**
@@ -277,7 +287,7 @@ public class AdaptiveClassCodeGenerator {
     /**
      * get value of adaptive annotation or if empty return splitted simple name
      */
-    private String[] getMethodAdaptiveValue(Adaptive adaptiveAnnotation) {
+    static String[] getMethodAdaptiveValue(Class<?> type, Adaptive adaptiveAnnotation) {
         String[] value = adaptiveAnnotation.value();
         // value is not set, use the value generated from class name as the key
         if (value.length == 0) {
@@ -296,23 +306,7 @@ public class AdaptiveClassCodeGenerator {
     private String generateUrlAssignmentIndirectly(Method method, String[] values) {
         Class<?>[] pts = method.getParameterTypes();
 
-        LinkedHashMap<String, Integer> getterReturnUrl = new LinkedHashMap<>();
-        // find URL getter method
-        for (int j = (values.length - 1); j >= 0; j--) {
-            String value = values[j];
-            for (int i = 0; i < pts.length; ++i) {
-                for (Method m : pts[i].getMethods()) {
-                    String name = m.getName();
-                    if (name.equalsIgnoreCase("get" + value)
-                                && Modifier.isPublic(m.getModifiers())
-                                && !Modifier.isStatic(m.getModifiers())
-                                && m.getParameterTypes().length == 0
-                                && m.getReturnType() == String.class) {
-                        getterReturnUrl.put(name, i);
-                    }
-                }
-            }
-        }
+        LinkedHashMap<String, Integer> getterReturnUrl = findExtNameGetters(method, values);
 
         if (getterReturnUrl.size() <= 0) {
             // getter method not found, throw
@@ -333,6 +327,35 @@ public class AdaptiveClassCodeGenerator {
         }
     }
 
+    /**
+     * find the public String getters of the method parameters matching the adaptive keys, the keys are searched
+     * from the last to the first one
+     *
+     * @return getter name -> parameter index
+     */
+    static LinkedHashMap<String, Integer> findExtNameGetters(Method method, String[] values) {
+        Class<?>[] pts = method.getParameterTypes();
+
+        LinkedHashMap<String, Integer> getterReturnUrl = new LinkedHashMap<>();
+        // find URL getter method
+        for (int j = (values.length - 1); j >= 0; j--) {
+            String value = values[j];
+            for (int i = 0; i < pts.length; ++i) {
+                for (Method m : pts[i].getMethods()) {
+                    String name = m.getName();
+                    if (name.equalsIgnoreCase("get" + value)
+                                && Modifier.isPublic(m.getModifiers())
+                                && !Modifier.isStatic(m.getModifiers())
+                                && m.getParameterTypes().length == 0
+                                && m.getReturnType() == String.class) {
+                        getterReturnUrl.put(name, i);
+                    }
+                }
+            }
+        }
+        return getterReturnUrl;
+    }
+
     /**
      * 1, test if argi is null
      * 2, test if argi.getXX() returns null
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Extension lookup used by the generated adaptive classes, which keep one dispatcher in a final field.
+ * <p>
+ * The dispatcher holds the {@link ExtensionFactory} of the extension interface, in the {@link ExtensionScope} of the
+ * adaptive instance, and caches the extensions by name. Only the singletons and the pooled extensions, which are
+ * proxies borrowing an instance for every call, are cached: the extensions of the other scopes are got from the
+ * factory on every call.
+ * The first two names are kept in dedicated slots compared by identity then by equals, so the usual case of one or
+ * two extension names is resolved without hashing. Further names are cached in a map.
+ * <p>
+ * An adaptive instance keeps dispatching to the factory which was registered when it was created, even after
+ * {@link ExtensionFactory#resetExtensionFactory(Class)}.
+ */
+public final class AdaptiveExtensionDispatcher<T> {
+
+    private final ExtensionFactory<T> factory;
+
+    private volatile Entry<T> first;
+
+    private volatile Entry<T> second;
+
+    private final ConcurrentMap<String, T> others = new ConcurrentHashMap<>();
+
+    public AdaptiveExtensionDispatcher(Class<T> type) {
+        this.factory = ExtensionScope.current().getExtensionFactory(type);
+    }
+
+    public ExtensionFactory<T> getFactory() {
+        return factory;
+    }
+
+    /**
+     * same as {@link ExtensionFactory#getExtensionForCall(String)}, cached for the shared extensions
+     */
+    public T getExtension(String name) {
+        Entry<T> entry = first;
+        if (entry != null && entry.matches(name)) {
+            return entry.extension;
+        }
+        entry = second;
+        if (entry != null && entry.matches(name)) {
+            return entry.extension;
+        }
+        return getExtensionSlow(name);
+    }
+
+    private T getExtensionSlow(String name) {
+        T extension = others.get(name);
+        if (extension != null) {
+            return extension;
+        }
+        // throws if there is no such extension, failed names are not cached
+        extension = factory.getExtensionForCall(name);
+        if (!factory.isSharedExtension(name)) {
+            return extension;
+        }
+        synchronized (this) {
+            if (first == null) {
+                first = new Entry<>(name, extension);
+            } else if (second == null && !first.matches(name)) {
+                second = new Entry<>(name, extension);
+            } else if (!first.matches(name) && !second.matches(name)) {
+                others.putIfAbsent(name, extension);
+            }
+        }
+        return extension;
+    }
+
+    private static final class Entry<T> {
+
+        private final String name;
+
+        private final T extension;
+
+        Entry(String name, T extension) {
+            this.name = name;
+            this.extension = extension;
+        }
+
+        boolean matches(String name) {
+            return this.name == name || this.name.equals(name);
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension;
+
+import org.neuronbit.xpi.common.extension.index.ExtensionIndex;
+import org.neuronbit.xpi.common.extension.inject.InjectionPlan;
+import org.neuronbit.xpi.common.logger.Logger;
+import org.neuronbit.xpi.common.logger.LoggerFactory;
+import org.neuronbit.xpi.common.utils.ClassUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Creation of all the singleton extensions of the known extension interfaces, in dependency order and in parallel.
+ * <p>
+ * The dependencies are those of {@link ExtensionFactory#getExtension(String)}: an extension depends on the adaptive
+ * extensions injected into its class and its wrapper classes, an adaptive extension of the configuration files
+ * depends on the adaptive extensions injected into it. The extension interfaces reached through injection are
+ * walked as well. The graph is checked for cycles before any extension is created, then every extension is created
+ * on the fork join pool as soon as its dependencies are created, so the independent parts of the graph are created
+ * in parallel.
+ * <pre>
+ *     ExtensionBootstrap.Report report = ExtensionBootstrap.bootstrap(asList(Protocol.class, Registry.class));
+ * </pre>
+ * The extensions of the other {@link Scope scopes} are not created. A failed extension does not stop the creation
+ * of the extensions depending on it, its injection is logged and skipped as with {@link ExtensionFactory}.
+ */
+public final class ExtensionBootstrap {
+    private static final Logger logger = LoggerFactory.getLogger(ExtensionBootstrap.class);
+
+    private ExtensionBootstrap() {
+    }
+
+    /**
+     * Bootstrap all the known extension interfaces with the common fork join pool: the interfaces of the
+     * {@link ExtensionIndex extension index} and those whose factory is created.
+     *
+     * @see #bootstrap(Collection, ForkJoinPool)
+     */
+    public static Report bootstrap() {
+        return bootstrap(getKnownTypes(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Bootstrap the given extension interfaces with the common fork join pool.
+     *
+     * @see #bootstrap(Collection, ForkJoinPool)
+     */
+    public static Report bootstrap(Collection<Class<?>> types) {
+        return bootstrap(types, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create the singleton extensions of the given extension interfaces, and of the interfaces they depend on, in
+     * dependency order on the given pool. The extension classes of the given interfaces are
+     * {@link ExtensionFactory#preload(Collection, java.util.concurrent.Executor) preloaded} first. The creation tasks
+     * run with the context class loader of the calling thread.
+     *
+     * @return the timing of every extension, logged at info level
+     * @throws IllegalStateException if the dependencies have a cycle, nothing is created then, or if any extension
+     *                               failed to be created, once all of them are done
+     */
+    public static Report bootstrap(Collection<Class<?>> types, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        ExtensionFactory.preload(types, pool);
+        List<Node> nodes = plan(types);
+
+        ClassLoader classLoader = ClassUtils.getClassLoader(ExtensionFactory.class);
+        Map<Node, CompletableFuture<Void>> tasks = new HashMap<>();
+        for (Node node : nodes) {
+            CompletableFuture<?>[] dependencies = node.dependencies.stream().map(tasks::get).toArray(CompletableFuture<?>[]::new);
+            tasks.put(node, CompletableFuture.allOf(dependencies).thenRunAsync(() -> node.create(start, classLoader), pool));
+        }
+        CompletableFuture.allOf(tasks.values().toArray(new CompletableFuture<?>[0])).join();
+
+        Report report = new Report("Bootstrapped", nodes, System.nanoTime() - start);
+        if (logger.isInfoEnabled()) {
+            logger.info(report.toString());
+        }
+        List<Node> failed = report.getFailedNodes();
+        if (!failed.isEmpty()) {
+            IllegalStateException e = new IllegalStateException("Failed to bootstrap extensions " + failed);
+            failed.forEach(node -> e.addSuppressed(node.failure));
+            throw e;
+        }
+        return report;
+    }
+
+    /**
+     * Build the dependency graph of the singleton extensions of the given extension interfaces, and of the
+     * interfaces they depend on. The extension classes are loaded, no extension is created.
+     *
+     * @return the extensions and adaptive extensions, every one after its dependencies
+     * @throws IllegalStateException if the dependencies have a cycle
+     */
+    public static List<Node> plan(Collection<Class<?>> types) {
+        Map<String, Node> nodes = new LinkedHashMap<>();
+        Deque<Class<?>> pending = new ArrayDeque<>(new LinkedHashSet<>(types));
+        Set<Class<?>> walked = new HashSet<>();
+        while (!pending.isEmpty()) {
+            Class<?> type = pending.poll();
+            if (!walked.add(type)) {
+                continue;
+            }
+            ExtensionFactory<?> factory = ExtensionFactory.getExtensionFactory(type);
+            for (String name : factory.getSupportedExtensions()) {
+                if (Scope.SINGLETON.equals(factory.getScope(name))) {
+                    Node node = new Node(factory, type, name);
+                    nodes.put(node.toString(), node);
+                    addDependencies(nodes, pending, node, factory.getInjectedSetters(name));
+                }
+            }
+        }
+
+        Set<Node> sorted = new LinkedHashSet<>();
+        Set<Node> visiting = new HashSet<>();
+        List<Node> path = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            sort(node, sorted, visiting, path);
+        }
+        return new ArrayList<>(sorted);
+    }
+
+    private static void addDependencies(Map<String, Node> nodes, Deque<Class<?>> pending, Node node, Collection<InjectionPlan.Setter> setters) {
+        for (InjectionPlan.Setter setter : setters) {
+            Class<?> type = setter.getType();
+            if (!isInjected(type)) {
+                continue;
+            }
+            String key = type.getName() + Node.ADAPTIVE_SUFFIX;
+            Node adaptive = nodes.get(key);
+            if (adaptive == null) {
+                ExtensionFactory<?> factory = ExtensionFactory.getExtensionFactory(type);
+                adaptive = new Node(factory, type, null);
+                nodes.put(key, adaptive);
+                pending.add(type);
+                addDependencies(nodes, pending, adaptive, factory.getAdaptiveInjectedSetters());
+            }
+            if (!node.dependencies.contains(adaptive)) {
+                node.dependencies.add(adaptive);
+            }
+        }
+    }
+
+    /**
+     * same condition as {@link org.neuronbit.xpi.common.extension.inject.SpiInjectProvider}
+     */
+    private static boolean isInjected(Class<?> type) {
+        return type.isInterface() && type.isAnnotationPresent(SPI.class)
+                && !ExtensionFactory.getExtensionFactory(type).getSupportedExtensions().isEmpty();
+    }
+
+    /**
+     * depth first topological sort
+     */
+    private static void sort(Node node, Set<Node> sorted, Set<Node> visiting, List<Node> path) {
+        if (sorted.contains(node)) {
+            return;
+        }
+        path.add(node);
+        if (!visiting.add(node)) {
+            List<Node> cycle = path.subList(path.indexOf(node), path.size());
+            throw new IllegalStateException("Circular extension dependency: " + cycle.stream().map(Node::toString).reduce((a, b) -> a + " -> " + b).orElse(""));
+        }
+        for (Node dependency : node.dependencies) {
+            sort(dependency, sorted, visiting, path);
+        }
+        visiting.remove(node);
+        path.remove(path.size() - 1);
+        sorted.add(node);
+    }
+
+    private static Set<Class<?>> getKnownTypes() {
+        ClassLoader classLoader = ClassUtils.getClassLoader(ExtensionFactory.class);
+        Set<Class<?>> types = new LinkedHashSet<>();
+        for (String name : ExtensionIndex.getIndex(classLoader).getTypes()) {
+            try {
+                Class<?> type = Class.forName(name, false, classLoader);
+                if (type.isInterface() && type.isAnnotationPresent(SPI.class)) {
+                    types.add(type);
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                logger.warn("Indexed extension interface " + name + " can't be loaded, it is not bootstrapped: " + e);
+            }
+        }
+        types.addAll(ExtensionFactory.getFactoryTypes());
+        return types;
+    }
+
+    /**
+     * An extension, or an adaptive extension, and the timing of its creation or of its lifecycle step.
+     */
+    public static final class Node {
+
+        private static final String ADAPTIVE_SUFFIX = "$Adaptive";
+
+        final ExtensionFactory<?> factory;
+
+        private final Class<?> type;
+
+        private final String name;
+
+        final List<Node> dependencies = new ArrayList<>();
+
+        private volatile long startNanos = -1;
+
+        private volatile long elapsedNanos = -1;
+
+        private volatile String thread;
+
+        private volatile Throwable failure;
+
+        Node(ExtensionFactory<?> factory, Class<?> type, String name) {
+            this.factory = factory;
+            this.type = type;
+            this.name = name;
+        }
+
+        private void create(long bootstrapStart, ClassLoader classLoader) {
+            run(bootstrapStart, classLoader, () -> {
+                if (name == null) {
+                    factory.getAdaptiveExtension();
+                } else {
+                    factory.getExtension(name);
+                }
+            });
+        }
+
+        /**
+         * run a step of the extension and record its timing, unless it has timed out
+         *
+         * @param origin start of the whole operation
+         */
+        void run(long origin, ClassLoader classLoader, Runnable step) {
+            Thread current = Thread.currentThread();
+            ClassLoader previous = current.getContextClassLoader();
+            current.setContextClassLoader(classLoader);
+            long start = System.nanoTime();
+            startNanos = start - origin;
+            thread = current.getName();
+            Throwable error = null;
+            try {
+                step.run();
+            } catch (Throwable t) {
+                error = t;
+            } finally {
+                current.setContextClassLoader(previous);
+            }
+            finish(System.nanoTime() - start, error);
+        }
+
+        /**
+         * record the timeout of the step, unless it is finished
+         */
+        synchronized void timeout(long timeoutNanos) {
+            if (elapsedNanos < 0) {
+                elapsedNanos = timeoutNanos;
+                failure = new TimeoutException(this + " not done in " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms");
+            }
+        }
+
+        private synchronized void finish(long elapsed, Throwable error) {
+            if (elapsedNanos < 0) {
+                elapsedNanos = elapsed;
+                failure = error;
+            }
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        /**
+         * @return the extension name, or null for the adaptive extension
+         */
+        public String getName() {
+            return name;
+        }
+
+        public boolean isAdaptive() {
+            return name == null;
+        }
+
+        /**
+         * @return the extensions this one depends on
+         */
+        public List<Node> getDependencies() {
+            return Collections.unmodifiableList(dependencies);
+        }
+
+        /**
+         * @return the start of the step since the start of the operation, in nanoseconds, -1 if not done
+         */
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        /**
+         * @return the time of the step in nanoseconds, without the wait for the dependencies, -1 if not done
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return the name of the thread which ran the step
+         */
+        public String getThread() {
+            return thread;
+        }
+
+        /**
+         * @return the failure or the timeout of the step, or null
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return name == null ? type.getName() + ADAPTIVE_SUFFIX : type.getName() + "[" + name + "]";
+        }
+    }
+
+    /**
+     * The timing of a bootstrap or of a lifecycle step, {@link #toString()} formats one line per extension.
+     */
+    public static final class Report {
+
+        private final String action;
+
+        private final List<Node> nodes;
+
+        private final long elapsedNanos;
+
+        Report(String action, List<Node> nodes, long elapsedNanos) {
+            this.action = action;
+            this.nodes = Collections.unmodifiableList(nodes);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the extensions, every one after its dependencies
+         */
+        public List<Node> getNodes() {
+            return nodes;
+        }
+
+        /**
+         * @return the time of the whole operation in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public List<Node> getFailedNodes() {
+            List<Node> failed = new ArrayList<>();
+            for (Node node : nodes) {
+                if (node.failure != null) {
+                    failed.add(node);
+                }
+            }
+            return failed;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(action).append(' ').append(nodes.size()).append(" extensions in ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append("ms (start, elapsed, thread, extension <- dependencies):");
+            for (Node node : nodes) {
+                builder.append(String.format("%n  %10.3fms %10.3fms  %s  %s", node.startNanos / 1e6, node.elapsedNanos / 1e6, node.thread, node));
+                if (!node.dependencies.isEmpty()) {
+                    builder.append(" <- ").append(node.dependencies);
+                }
+                if (node.failure != null) {
+                    builder.append(" FAILED: ").append(node.failure);
+                }
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -1,21 +1,39 @@
 package org.neuronbit.xpi.common.extension;
 
+import org.neuronbit.xpi.common.compiler.support.ClassDefiner;
+import org.neuronbit.xpi.common.compiler.support.ClassPools;
+import org.neuronbit.xpi.common.extension.index.ClasspathResourceIndex;
+import org.neuronbit.xpi.common.extension.index.DiscoveryCache;
+import org.neuronbit.xpi.common.extension.index.ExtensionIndex;
+import org.neuronbit.xpi.common.extension.index.ExtensionIndexEntry;
+import org.neuronbit.xpi.common.extension.index.IndexedActivate;
+import org.neuronbit.xpi.common.extension.support.ActivatePredicate;
+import org.neuronbit.xpi.common.extension.support.ExtensionDescriptorParser;
+import org.neuronbit.xpi.common.extension.support.WrapperComparator;
 import org.neuronbit.xpi.common.lang.Prioritized;
 import org.neuronbit.xpi.common.logger.Logger;
 import org.neuronbit.xpi.common.logger.LoggerFactory;
 import org.neuronbit.xpi.common.utils.ArrayUtils;
 import org.neuronbit.xpi.common.utils.ClassUtils;
+import org.neuronbit.xpi.common.utils.CollectionUtils;
 import org.neuronbit.xpi.common.utils.ConcurrentHashSet;
 import org.neuronbit.xpi.common.utils.Holder;
 import org.neuronbit.xpi.common.utils.StringUtils;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import javassist.ClassPool;
+import javassist.util.proxy.DefineClassHelper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,18 +45,38 @@ import java.util.concurrent.ConcurrentMap;
 import static java.util.Arrays.asList;
 import static java.util.ServiceLoader.load;
 import static java.util.stream.StreamSupport.stream;
-import static org.neuronbit.xpi.common.constants.Constants.COMMA_SPLIT_PATTERN;
 
 public class ExtensionClassLoader {
     private static final Logger logger = LoggerFactory.getLogger(ExtensionClassLoader.class);
 
+    /**
+     * system property enabling the lazy discovery mode, read when the class loader is created
+     */
+    public static final String LAZY_DISCOVERY_PROPERTY = "xpi.discovery.lazy";
+
     private static ExtensionSource[] strategies = loadLoadingStrategies();
 
     private final Class<?> type;
 
+    private final boolean lazy;
+
+    /**
+     * class loader of the {@link ExtensionScope}, null for the context class loader
+     */
+    private final ClassLoader classLoader;
+
     private final Holder<Map<String, Class<?>>> cachedClasses = new Holder<>();
+    /**
+     * indexed extensions not loaded yet, by name, in lazy discovery mode
+     */
+    private final Map<String, ExtensionIndexEntry> pendingEntries = new ConcurrentHashMap<>();
+    /**
+     * extensions found by scanning the configuration files, to be written to the {@link DiscoveryCache}
+     */
+    private List<ExtensionIndexEntry> discoveredEntries;
     private final ConcurrentMap<Class<?>, String> cachedNames = new ConcurrentHashMap<>();
     private final Map<String, Object> cachedActivates = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, ActivatePredicate> cachedActivatePredicates = Collections.synchronizedMap(new LinkedHashMap<>());
 
     private final Map<String, IllegalStateException> exceptions = new ConcurrentHashMap<>();
     /**
@@ -48,9 +86,25 @@ public class ExtensionClassLoader {
 
     private volatile Class<?> cachedAdaptiveClass = null;
     private Set<Class<?>> cachedWrapperClasses = null;
+    private final ConcurrentMap<String, List<MethodHandle>> cachedWrapperConstructors = new ConcurrentHashMap<>();
 
+    /**
+     * In lazy discovery mode, enabled with the {@link #LAZY_DISCOVERY_PROPERTY} system property, the classes of the
+     * extensions found in the extension index are not loaded until they are needed, by
+     * {@link #getExtensionClass(String)} for instance. Their name and activate metadata come from the index. The other
+     * extension classes are loaded without being initialized, they are initialized when first instantiated.
+     */
     public ExtensionClassLoader(Class<?> type) {
+        this(type, null);
+    }
+
+    /**
+     * @param classLoader class loader of the extensions, null for the context class loader
+     */
+    public ExtensionClassLoader(Class<?> type, ClassLoader classLoader) {
         this.type = type;
+        this.lazy = Boolean.getBoolean(LAZY_DISCOVERY_PROPERTY);
+        this.classLoader = classLoader;
     }
 
     /**
@@ -81,12 +135,50 @@ public class ExtensionClassLoader {
         }
     }
 
+    /**
+     * @return the classes of all the extensions, loading them in lazy discovery mode
+     */
     public Map<String, Class<?>> getExtensionClasses() {
+        Map<String, Class<?>> classes = loadExtensionClasses();
+        for (String name : pendingEntries.keySet()) {
+            resolvePendingClass(name);
+        }
+        return classes;
+    }
+
+    /**
+     * @return the classes of the extensions which are already loaded
+     */
+    Map<String, Class<?>> getLoadedExtensionClasses() {
         return loadExtensionClasses();
     }
 
+    /**
+     * @return the names of all the extensions, without loading them in lazy discovery mode
+     */
+    public Set<String> getExtensionNames() {
+        Set<String> names = new HashSet<>(loadExtensionClasses().keySet());
+        names.addAll(pendingEntries.keySet());
+        return names;
+    }
+
+    /**
+     * @return class name of the extension, or null if there is no such extension
+     */
+    public String getExtensionClassName(String name) {
+        Class<?> clazz = loadExtensionClasses().get(name);
+        if (clazz != null) {
+            return clazz.getName();
+        }
+        ExtensionIndexEntry entry = pendingEntries.get(name);
+        return entry == null ? null : entry.getClassName();
+    }
+
     public Class<?> getExtensionClass(String name) {
-        final Class<?> clazz = getExtensionClasses().get(name);
+        Class<?> clazz = loadExtensionClasses().get(name);
+        if (clazz == null) {
+            clazz = resolvePendingClass(name);
+        }
         if (clazz == null || unacceptableExceptions.contains(name)) {
             throw findException(name);
         }
@@ -98,8 +190,50 @@ public class ExtensionClassLoader {
         return cachedWrapperClasses;
     }
 
+    /**
+     * Get the constructors of the wrappers applying to the extension with the given name, in wrapping order. Each one
+     * takes the extension, or the previous wrapper, as an <code>Object</code> and returns the wrapper.
+     *
+     * @return non-null
+     */
+    public List<MethodHandle> getWrapperConstructors(String name) {
+        List<MethodHandle> constructors = cachedWrapperConstructors.get(name);
+        if (constructors == null) {
+            cachedWrapperConstructors.putIfAbsent(name, createWrapperConstructors(name));
+            constructors = cachedWrapperConstructors.get(name);
+        }
+        return constructors;
+    }
+
+    private List<MethodHandle> createWrapperConstructors(String name) {
+        final Set<Class<?>> wrapperClasses = getExtensionWrapperClasses();
+        if (CollectionUtils.isEmpty(wrapperClasses)) {
+            return Collections.emptyList();
+        }
+        List<Class<?>> wrapperClassesList = new ArrayList<>(wrapperClasses);
+        wrapperClassesList.sort(WrapperComparator.COMPARATOR);
+        Collections.reverse(wrapperClassesList);
+
+        List<MethodHandle> constructors = new ArrayList<>();
+        for (Class<?> wrapperClass : wrapperClassesList) {
+            Wrapper wrapper = wrapperClass.getAnnotation(Wrapper.class);
+            if (wrapper == null
+                        || (ArrayUtils.contains(wrapper.matches(), name) && !ArrayUtils.contains(wrapper.mismatches(), name))) {
+                try {
+                    constructors.add(MethodHandles.lookup()
+                                             .unreflectConstructor(wrapperClass.getConstructor(type))
+                                             .asType(MethodType.methodType(Object.class, Object.class)));
+                } catch (NoSuchMethodException | IllegalAccessException e) {
+                    throw new IllegalStateException("Wrapper class " + wrapperClass.getName() + " of extension " + type.getName()
+                                                            + " can't be instantiated: " + e.getMessage(), e);
+                }
+            }
+        }
+        return Collections.unmodifiableList(constructors);
+    }
+
     public boolean containsExtension(String name) {
-        return getExtensionClasses().containsKey(name);
+        return loadExtensionClasses().containsKey(name) || pendingEntries.containsKey(name);
     }
 
     /**
@@ -116,9 +250,32 @@ public class ExtensionClassLoader {
                 return classes;
             }
 
-            Map<String, Class<?>> extensionClasses = new HashMap<>();
-            for (ExtensionSource strategy : strategies) {
-                loadDirectory(extensionClasses, type.getName(), strategy);
+            Map<String, Class<?>> extensionClasses = new ConcurrentHashMap<>();
+            ExtensionIndex index = ExtensionIndex.getIndex(findClassLoader());
+            List<ExtensionIndexEntry> cachedEntries = Collections.emptyList();
+            DiscoveryCache cache = null;
+            if (index.getEntries(type.getName()).isEmpty()) {
+                index = null;
+                cache = DiscoveryCache.getCache(findClassLoader(), getDirectories());
+                cachedEntries = cache.getEntries(type.getName());
+                if (cachedEntries.isEmpty() && cache.isEnabled()) {
+                    discoveredEntries = new ArrayList<>();
+                }
+            }
+            try {
+                for (ExtensionSource strategy : strategies) {
+                    if (cachedEntries.isEmpty()) {
+                        loadDirectory(extensionClasses, type.getName(), strategy, index);
+                    } else {
+                        loadIndex(extensionClasses, cachedEntries, strategy);
+                    }
+                }
+                // the extensions which failed to load are found again by the next runs
+                if (discoveredEntries != null && !discoveredEntries.isEmpty() && exceptions.isEmpty()) {
+                    cache.putEntries(type.getName(), discoveredEntries);
+                }
+            } finally {
+                discoveredEntries = null;
             }
             cachedClasses.set(extensionClasses);
             return extensionClasses;
@@ -127,7 +284,58 @@ public class ExtensionClassLoader {
 
     public String getExtensionName(Class<?> extensionClass) {
         loadExtensionClasses();
-        return cachedNames.get(extensionClass);
+        String name = cachedNames.get(extensionClass);
+        if (name == null) {
+            for (Map.Entry<String, ExtensionIndexEntry> entry : pendingEntries.entrySet()) {
+                if (entry.getValue().getClassName().equals(extensionClass.getName())) {
+                    resolvePendingClass(entry.getKey());
+                    return cachedNames.get(extensionClass);
+                }
+            }
+        }
+        return name;
+    }
+
+    /**
+     * load the class of an extension deferred in lazy discovery mode, under all its names
+     *
+     * @return the class, or null if the extension is not pending or failed to load
+     */
+    private Class<?> resolvePendingClass(String name) {
+        ExtensionIndexEntry entry = pendingEntries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (pendingEntries) {
+            Map<String, Class<?>> extensionClasses = loadExtensionClasses();
+            if (pendingEntries.get(name) != entry) {
+                // resolved by another thread
+                return extensionClasses.get(name);
+            }
+            String[] names = getEntryNames(entry);
+            try {
+                Class<?> clazz = Class.forName(entry.getClassName(), true, findClassLoader());
+                checkSubtype(clazz);
+                cacheName(clazz, names[0]);
+                for (String n : names) {
+                    if (pendingEntries.get(n) == entry) {
+                        extensionClasses.put(n, clazz);
+                    }
+                }
+                return clazz;
+            } catch (Throwable t) {
+                IllegalStateException e =
+                        new IllegalStateException("Failed to load extension class (interface: "
+                                                          + type + ", class line: " + entry.toLine() + ") in "
+                                                          + entry.getSource() + ", cause: " + t.getMessage(), t);
+                exceptions.put(entry.toLine(), e);
+                return null;
+            } finally {
+                for (String n : names) {
+                    pendingEntries.remove(n, entry);
+                }
+            }
+        }
     }
 
     public Map<String, Object> getActivates() {
@@ -135,6 +343,14 @@ public class ExtensionClassLoader {
         return cachedActivates;
     }
 
+    /**
+     * @return the compiled {@link Activate#value()} of the activate extensions, by name
+     */
+    public Map<String, ActivatePredicate> getActivatePredicates() {
+        loadExtensionClasses();
+        return cachedActivatePredicates;
+    }
+
     public Class<?> getAdaptiveExtensionClass(String name) {
         loadExtensionClasses();
         if (cachedAdaptiveClass != null) {
@@ -143,80 +359,194 @@ public class ExtensionClassLoader {
         return cachedAdaptiveClass = createAdaptiveExtensionClass(name);
     }
 
+    /**
+     * @return true if the adaptive class is not created yet and has to be compiled by the
+     * {@link org.neuronbit.xpi.common.compiler.Compiler}: there is neither an adaptive extension, nor an adaptive
+     * class generated at build time or in the discovery cache
+     */
+    boolean isAdaptiveClassToCompile() {
+        loadExtensionClasses();
+        if (cachedAdaptiveClass != null || Arrays.stream(type.getMethods()).noneMatch(m -> m.isAnnotationPresent(Adaptive.class))) {
+            return false;
+        }
+        ClassLoader classLoader = findClassLoader();
+        return findPrecompiledAdaptiveClass(classLoader) == null
+                && !DiscoveryCache.getCache(classLoader, getDirectories()).isEnabled();
+    }
+
+    /**
+     * @return the adaptive extension class of the configuration files, or null if the adaptive class is generated
+     */
+    Class<?> getConfiguredAdaptiveClass() {
+        loadExtensionClasses();
+        Class<?> clazz = cachedAdaptiveClass;
+        return clazz != null && clazz.isAnnotationPresent(Adaptive.class) ? clazz : null;
+    }
+
+    /**
+     * set the adaptive class compiled ahead of {@link #getAdaptiveExtensionClass(String)}, ignored if already created
+     */
+    void setCompiledAdaptiveClass(Class<?> clazz) {
+        if (cachedAdaptiveClass == null) {
+            cachedAdaptiveClass = clazz;
+        }
+    }
+
     private Class<?> createAdaptiveExtensionClass(String name) {
-        String code = new AdaptiveClassCodeGenerator(type, name).generate();
         ClassLoader classLoader = findClassLoader();
+        Class<?> precompiled = findPrecompiledAdaptiveClass(classLoader);
+        if (precompiled != null) {
+            return precompiled;
+        }
+        DiscoveryCache cache = DiscoveryCache.getCache(classLoader, getDirectories());
+        if (cache.isEnabled()) {
+            return createCachedAdaptiveClass(cache, name, classLoader);
+        }
         org.neuronbit.xpi.common.compiler.Compiler compiler = ExtensionFactory.getExtensionFactory(org.neuronbit.xpi.common.compiler.Compiler.class).getAdaptiveExtension();
-        return compiler.compile(code, classLoader);
+        return compiler.compileAdaptive(type, name, classLoader);
+    }
+
+    /**
+     * find the adaptive class generated at build time by the <code>xpi-processor</code> annotation processor, so the
+     * compiler does not have to be loaded
+     */
+    private Class<?> findPrecompiledAdaptiveClass(ClassLoader classLoader) {
+        String className = type.getPackage().getName() + "." + type.getSimpleName() + "$Adaptive";
+        try {
+            Class<?> clazz = Class.forName(className, true, classLoader);
+            if (type.isAssignableFrom(clazz)) {
+                return clazz;
+            }
+            logger.warn(className + " is not a subtype of " + type.getName() + ", ignore it and generate the adaptive class.");
+        } catch (ClassNotFoundException | LinkageError e) {
+            // not generated at build time
+        }
+        return null;
+    }
+
+    /**
+     * define the adaptive class from the bytecode in the cache, the bytecode is generated with
+     * {@link AdaptiveClassBytecodeGenerator} and cached on the first run
+     */
+    private Class<?> createCachedAdaptiveClass(DiscoveryCache cache, String name, ClassLoader classLoader) {
+        AdaptiveClassBytecodeGenerator generator = new AdaptiveClassBytecodeGenerator(type, name);
+        String className = generator.getClassName();
+        try {
+            // defined by a previous extension factory of the interface
+            return Class.forName(className, true, type.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            // not defined yet
+        }
+        try {
+            byte[] bytecode = cache.getAdaptiveClass(className);
+            if (bytecode == null) {
+                ClassPool pool = ClassPools.newClassPool(classLoader);
+                bytecode = generator.generate(pool).toBytecode();
+                cache.putAdaptiveClass(className, bytecode);
+            }
+            Class<?> clazz = ClassDefiner.defineAdaptiveClass(type, className, bytecode);
+            return clazz != null ? clazz : DefineClassHelper.toClass(className, type, type.getClassLoader(), ExtensionClassLoader.class.getProtectionDomain(), bytecode);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to define the cached adaptive class " + className + ", cause: " + t.getMessage(), t);
+        }
     }
 
-    private void loadDirectory(Map<String, Class<?>> extensionClasses, String type, ExtensionSource strategy) {
+    /**
+     * load the extension classes of the given strategy, from the build time index for the configuration files found
+     * in an indexed class path root, by scanning the other configuration files
+     *
+     * @param index the build time index, null if the interface is not indexed
+     */
+    private void loadDirectory(Map<String, Class<?>> extensionClasses, String type, ExtensionSource strategy, ExtensionIndex index) {
         String fileName = strategy.directory() + type;
         try {
-            Enumeration<URL> urls = null;
+            List<URL> urls = null;
             ClassLoader classLoader = findClassLoader();
 
             // try to load from ExtensionFactory's ClassLoader first
             if (strategy.preferExtensionClassLoader()) {
                 ClassLoader extensionLoaderClassLoader = ExtensionFactory.class.getClassLoader();
                 if (ClassLoader.getSystemClassLoader() != extensionLoaderClassLoader) {
-                    urls = extensionLoaderClassLoader.getResources(fileName);
+                    urls = getResources(extensionLoaderClassLoader, strategy.directory(), type);
                 }
             }
 
-            if (urls == null || !urls.hasMoreElements()) {
-                if (classLoader != null) {
-                    urls = classLoader.getResources(fileName);
-                } else {
-                    urls = ClassLoader.getSystemResources(fileName);
-                }
+            // the index is built from the class path of the default class loader, not from the preferred one
+            boolean preferred = urls != null && !urls.isEmpty();
+            if (!preferred) {
+                urls = getResources(classLoader, strategy.directory(), type);
             }
 
-            if (urls != null) {
-                while (urls.hasMoreElements()) {
-                    java.net.URL resourceURL = urls.nextElement();
-                    loadResource(extensionClasses, classLoader, resourceURL, strategy.overridden(), strategy.excludedPackages());
+            Set<String> indexedRoots = new HashSet<>();
+            for (URL resourceURL : urls) {
+                List<ExtensionIndexEntry> entries = index == null ? null : index.getEntries(type, resourceURL, fileName);
+                if (entries != null) {
+                    indexedRoots.add(ExtensionIndex.getRoot(resourceURL, fileName));
+                    loadIndex(extensionClasses, entries, strategy);
+                } else {
+                    loadResource(extensionClasses, classLoader, resourceURL, strategy.directory(), strategy.overridden(), strategy.excludedPackages());
                 }
             }
+            if (index != null && !preferred) {
+                // indexed roots whose configuration file is not visible
+                loadIndex(extensionClasses, index.getEntriesExcept(type, indexedRoots), strategy);
+            }
         } catch (Throwable t) {
             logger.error("Exception occurred when loading extension class (interface: " +
                                  type + ", description file: " + fileName + ").", t);
         }
     }
 
+    /**
+     * find the config files from the class path index shared by all the extension interfaces, or from the class
+     * loader if the class path can't be indexed
+     */
+    private static List<URL> getResources(ClassLoader classLoader, String directory, String fileName) throws IOException {
+        Set<String> directories = getDirectories();
+        directories.add(directory);
+        List<URL> urls = ClasspathResourceIndex.getIndex(classLoader, directories).getResources(directory, fileName);
+        if (urls != null) {
+            return urls;
+        }
+        if (classLoader == null) {
+            return Collections.list(ClassLoader.getSystemResources(directory + fileName));
+        }
+        return Collections.list(classLoader.getResources(directory + fileName));
+    }
+
+    /**
+     * @return the directories of all the extension sources
+     */
+    private static Set<String> getDirectories() {
+        Set<String> directories = new HashSet<>();
+        for (ExtensionSource strategy : strategies) {
+            directories.add(strategy.directory());
+        }
+        return directories;
+    }
+
     private void loadResource(Map<String, Class<?>> extensionClasses, ClassLoader classLoader,
-                              java.net.URL resourceURL, boolean overridden, String... excludedPackages) {
+                              java.net.URL resourceURL, String directory, boolean overridden, String... excludedPackages) {
         try {
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(resourceURL.openStream(), StandardCharsets.UTF_8))) {
-                String line;
-                String clazz = null;
-                while ((line = reader.readLine()) != null) {
-                    final int ci = line.indexOf('#');
-                    if (ci >= 0) {
-                        line = line.substring(0, ci);
-                    }
-                    line = line.trim();
-                    if (line.length() > 0) {
-                        try {
-                            String name = null;
-                            int i = line.indexOf('=');
-                            if (i > 0) {
-                                name = line.substring(0, i).trim();
-                                clazz = line.substring(i + 1).trim();
-                            } else {
-                                clazz = line;
-                            }
-                            if (StringUtils.isNotEmpty(clazz) && !isExcluded(clazz, excludedPackages)) {
-                                loadClass(extensionClasses, resourceURL, Class.forName(clazz, true, classLoader), name, overridden);
-                            }
-                        } catch (Throwable t) {
-                            IllegalStateException e =
-                                    new IllegalStateException("Failed to load extension class (interface: "
-                                                                      + type + ", class line: " + line + ") in "
-                                                                      + resourceURL + ", cause: " + t.getMessage(), t);
-                            exceptions.put(line, e);
-                        }
+            ExtensionDescriptorParser parser;
+            try (InputStream in = resourceURL.openStream()) {
+                parser = ExtensionDescriptorParser.parse(in);
+            }
+            while (parser.next()) {
+                try {
+                    String clazz = parser.getClassName();
+                    if (StringUtils.isNotEmpty(clazz) && !isExcluded(clazz, excludedPackages)) {
+                        loadClass(extensionClasses, resourceURL, directory, Class.forName(clazz, !lazy, classLoader), parser.getName(), overridden);
                     }
+                } catch (Throwable t) {
+                    String line = parser.getLine();
+                    IllegalStateException e =
+                            new IllegalStateException("Failed to load extension class (interface: "
+                                                              + type + ", class line: " + line + ") in "
+                                                              + resourceURL + ", cause: " + t.getMessage(), t);
+                    exceptions.put(line, e);
                 }
             }
         } catch (Throwable t) {
@@ -225,6 +555,75 @@ public class ExtensionClassLoader {
         }
     }
 
+    /**
+     * load the extension classes of the given strategy from the build time index, instead of scanning the
+     * configuration files
+     */
+    private void loadIndex(Map<String, Class<?>> extensionClasses, List<ExtensionIndexEntry> entries, ExtensionSource strategy) {
+        ClassLoader classLoader = findClassLoader();
+        for (ExtensionIndexEntry entry : entries) {
+            if (!strategy.directory().equals(entry.getDirectory()) || isExcluded(entry.getClassName(), strategy.excludedPackages())) {
+                continue;
+            }
+            try {
+                if (lazy && entry.getKind() == ExtensionIndexEntry.Kind.EXTENSION) {
+                    deferExtensionClass(extensionClasses, entry, strategy.overridden());
+                    continue;
+                }
+                Class<?> clazz = Class.forName(entry.getClassName(), !lazy, classLoader);
+                checkSubtype(clazz);
+                switch (entry.getKind()) {
+                    case ADAPTIVE:
+                        cacheAdaptiveClass(clazz, strategy.overridden());
+                        break;
+                    case WRAPPER:
+                        cacheWrapperClass(clazz);
+                        break;
+                    default:
+                        loadExtensionClass(extensionClasses, entry.getSource(), clazz, entry.getName(), entry.getActivate(), strategy.overridden());
+                }
+            } catch (Throwable t) {
+                IllegalStateException e =
+                        new IllegalStateException("Failed to load extension class (interface: "
+                                                          + type + ", class line: " + entry.toLine() + ") in "
+                                                          + entry.getSource() + ", cause: " + t.getMessage(), t);
+                exceptions.put(entry.toLine(), e);
+            }
+        }
+    }
+
+    /**
+     * record an indexed extension without loading its class, in lazy discovery mode
+     */
+    private void deferExtensionClass(Map<String, Class<?>> extensionClasses, ExtensionIndexEntry entry, boolean overridden) {
+        String[] names = getEntryNames(entry);
+        cacheActivateClass(entry.getActivate(), names[0]);
+        for (String n : names) {
+            ExtensionIndexEntry previous = pendingEntries.get(n);
+            if (previous == null || overridden) {
+                pendingEntries.put(n, entry);
+                extensionClasses.remove(n);
+            } else if (!previous.getClassName().equals(entry.getClassName())) {
+                // duplicate implementation is unacceptable
+                unacceptableExceptions.add(n);
+                String duplicateMsg = "Duplicate extension " + type.getName() + " name " + n + " on " + previous.getClassName() + " and " + entry.getClassName();
+                logger.error(duplicateMsg);
+                throw new IllegalStateException(duplicateMsg);
+            }
+        }
+    }
+
+    private String[] getEntryNames(ExtensionIndexEntry entry) {
+        String name = entry.getName();
+        if (StringUtils.isEmpty(name)) {
+            name = findAnnotationName(ClassUtils.getSimpleName(entry.getClassName()));
+            if (name.length() == 0) {
+                throw new IllegalStateException("No such extension name for the class " + entry.getClassName() + " in the config " + entry.getSource());
+            }
+        }
+        return ExtensionDescriptorParser.splitNames(name);
+    }
+
     private boolean isExcluded(String className, String... excludedPackages) {
         if (excludedPackages != null) {
             for (String excludePackage : excludedPackages) {
@@ -236,44 +635,74 @@ public class ExtensionClassLoader {
         return false;
     }
 
-    private void loadClass(Map<String, Class<?>> extensionClasses, java.net.URL resourceURL, Class<?> clazz, String name,
+    private void loadClass(Map<String, Class<?>> extensionClasses, java.net.URL resourceURL, String directory, Class<?> clazz, String name,
                            boolean overridden) throws NoSuchMethodException {
-        if (!type.isAssignableFrom(clazz)) {
-            throw new IllegalStateException("Error occurred when loading extension class (interface: " +
-                                                    type + ", class line: " + clazz.getName() + "), class "
-                                                    + clazz.getName() + " is not subtype of interface.");
-        }
+        checkSubtype(clazz);
+        ExtensionIndexEntry.Kind kind;
+        Activate activate = null;
         if (clazz.isAnnotationPresent(Adaptive.class)) {
+            kind = ExtensionIndexEntry.Kind.ADAPTIVE;
             cacheAdaptiveClass(clazz, overridden);
         } else if (isWrapperClass(clazz)) {
+            kind = ExtensionIndexEntry.Kind.WRAPPER;
             cacheWrapperClass(clazz);
         } else {
-            if (StringUtils.isEmpty(name)) {
-                name = findAnnotationName(clazz);
-                if (name.length() == 0) {
-                    throw new IllegalStateException("No such extension name for the class " + clazz.getName() + " in the config " + resourceURL);
-                }
+            kind = ExtensionIndexEntry.Kind.EXTENSION;
+            activate = clazz.getAnnotation(Activate.class);
+            loadExtensionClass(extensionClasses, resourceURL, clazz, name, activate, overridden);
+        }
+        if (discoveredEntries != null) {
+            IndexedActivate indexedActivate = activate == null ? null
+                    : new IndexedActivate(activate.group(), activate.value(), activate.before(), activate.after(), activate.order());
+            discoveredEntries.add(new ExtensionIndexEntry(directory, type.getName(), name, clazz.getName(), kind, indexedActivate));
+        }
+    }
+
+    private void checkSubtype(Class<?> clazz) {
+        if (!type.isAssignableFrom(clazz)) {
+            throw new IllegalStateException("Error occurred when loading extension class (interface: " +
+                                                    type + ", class line: " + clazz.getName() + "), class "
+                                                    + clazz.getName() + " is not subtype of interface.");
+        }
+    }
+
+    private void loadExtensionClass(Map<String, Class<?>> extensionClasses, java.net.URL resourceURL, Class<?> clazz, String name,
+                                    Activate activate, boolean overridden) {
+        if (StringUtils.isEmpty(name)) {
+            name = findAnnotationName(clazz.getSimpleName());
+            if (name.length() == 0) {
+                throw new IllegalStateException("No such extension name for the class " + clazz.getName() + " in the config " + resourceURL);
             }
+        }
 
-            String[] names = COMMA_SPLIT_PATTERN.split(name);
-            if (ArrayUtils.isNotEmpty(names)) {
-                cacheActivateClass(clazz, names[0]);
-                for (String n : names) {
-                    cacheName(clazz, n);
-                    saveInExtensionClass(extensionClasses, clazz, n, overridden);
-                }
+        String[] names = ExtensionDescriptorParser.splitNames(name);
+        if (ArrayUtils.isNotEmpty(names)) {
+            cacheActivateClass(activate, names[0]);
+            for (String n : names) {
+                cacheName(clazz, n);
+                saveInExtensionClass(extensionClasses, clazz, n, overridden);
             }
         }
     }
 
-    private static ClassLoader findClassLoader() {
-        return ClassUtils.getClassLoader(ExtensionClassLoader.class);
+    private ClassLoader findClassLoader() {
+        return classLoader != null ? classLoader : ClassUtils.getClassLoader(ExtensionClassLoader.class);
     }
 
     /**
      * put clazz in extensionClasses
      */
     private void saveInExtensionClass(Map<String, Class<?>> extensionClasses, Class<?> clazz, String name, boolean overridden) {
+        ExtensionIndexEntry pending = pendingEntries.get(name);
+        if (pending != null) {
+            if (!overridden && !pending.getClassName().equals(clazz.getName())) {
+                unacceptableExceptions.add(name);
+                String duplicateMsg = "Duplicate extension " + type.getName() + " name " + name + " on " + pending.getClassName() + " and " + clazz.getName();
+                logger.error(duplicateMsg);
+                throw new IllegalStateException(duplicateMsg);
+            }
+            pendingEntries.remove(name);
+        }
         Class<?> c = extensionClasses.get(name);
         if (c == null || overridden) {
             extensionClasses.put(name, clazz);
@@ -300,8 +729,8 @@ public class ExtensionClassLoader {
         }
     }
 
-    private String findAnnotationName(Class<?> clazz) {
-        String name = clazz.getSimpleName();
+    private String findAnnotationName(String simpleName) {
+        String name = simpleName;
         if (name.endsWith(type.getSimpleName())) {
             name = name.substring(0, name.length() - type.getSimpleName().length());
         }
@@ -340,7 +769,7 @@ public class ExtensionClassLoader {
             if (StringUtils.isBlank(name)) {
                 throw new IllegalStateException("Extension name is blank (Extension " + type + ")!");
             }
-            if (cachedClasses.get().containsKey(name)) {
+            if (containsExtension(name)) {
                 throw new IllegalStateException("Extension name " +
                                                         name + " already exists (Extension " + type + ")!");
             }
@@ -361,10 +790,10 @@ public class ExtensionClassLoader {
      * <p>
      * for compatibility, also cache class with old alibaba Activate annotation
      */
-    private void cacheActivateClass(Class<?> clazz, String name) {
-        Activate activate = clazz.getAnnotation(Activate.class);
+    private void cacheActivateClass(Activate activate, String name) {
         if (activate != null) {
             cachedActivates.put(name, activate);
+            cachedActivatePredicates.put(name, ActivatePredicate.compile(activate.value()));
         }
     }
 
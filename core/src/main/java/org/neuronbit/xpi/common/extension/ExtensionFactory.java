@@ -16,36 +16,50 @@
  */
 package org.neuronbit.xpi.common.extension;
 
+import org.neuronbit.xpi.common.compiler.Compiler;
 import org.neuronbit.xpi.common.context.Lifecycle;
-import org.neuronbit.xpi.common.extension.inject.DisableInject;
+import org.neuronbit.xpi.common.extension.index.ExtensionIndex;
 import org.neuronbit.xpi.common.extension.inject.InjectProvider;
-import org.neuronbit.xpi.common.extension.support.ActivateComparator;
-import org.neuronbit.xpi.common.extension.support.WrapperComparator;
+import org.neuronbit.xpi.common.extension.inject.InjectionPlan;
+import org.neuronbit.xpi.common.extension.support.ActivatePredicate;
+import org.neuronbit.xpi.common.extension.support.ActivateSorter;
+import org.neuronbit.xpi.common.extension.support.InstancePool;
+import org.neuronbit.xpi.common.extension.support.ThreadInstances;
 import org.neuronbit.xpi.common.lang.Prioritized;
 import org.neuronbit.xpi.common.logger.Logger;
 import org.neuronbit.xpi.common.logger.LoggerFactory;
-import org.neuronbit.xpi.common.utils.ArrayUtils;
+import org.neuronbit.xpi.common.utils.ClassUtils;
+import org.neuronbit.xpi.common.utils.ClockCache;
 import org.neuronbit.xpi.common.utils.CollectionUtils;
+import org.neuronbit.xpi.common.utils.CreateOnceCache;
 import org.neuronbit.xpi.common.utils.Holder;
-import org.neuronbit.xpi.common.utils.ReflectUtils;
 import org.neuronbit.xpi.common.utils.StringUtils;
 
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.sort;
@@ -58,6 +72,9 @@ import static org.neuronbit.xpi.common.constants.Constants.REMOVE_VALUE_PREFIX;
  * at present designed to be singleton or static (by itself totally static or uses some static fields).
  * So the instances returned from them are of process or classloader scope.
  * <p>
+ * The factories and their singletons belong to an {@link ExtensionScope}, the default one for
+ * {@link #getExtensionFactory(Class)}, a scope of their own for the plugins loaded by a class loader to be released.
+ * <p>
  * Load extensions
  * <ul>
  * <li>auto inject dependency extension </li>
@@ -73,86 +90,203 @@ import static org.neuronbit.xpi.common.constants.Constants.REMOVE_VALUE_PREFIX;
 public class ExtensionFactory<T> {
     private static final Logger logger = LoggerFactory.getLogger(ExtensionFactory.class);
 
-    private static final ConcurrentMap<Class<?>, ExtensionFactory<?>> EXTENSION_FACTORY = new ConcurrentHashMap<>(64);
-    private static final ConcurrentMap<Class<?>, Object> EXTENSION_INSTANCES = new ConcurrentHashMap<>(64);
+    private static final int ACTIVATE_CACHE_CAPACITY = 256;
 
     private final Class<?> type;
+    private final ExtensionScope scope;
     private final String cachedDefaultName;
 
     private final InjectProvider injectProvider;
     private final ExtensionClassLoader extensionClassLoader;
 
     private final Map<String, Set<String>> cachedActivateGroups = Collections.synchronizedMap(new LinkedHashMap<>());
-    private final Map<String, String[]> cachedActivateValues = Collections.synchronizedMap(new LinkedHashMap<>());
-    private final ConcurrentMap<String, Holder<Object>> cachedInstances = new ConcurrentHashMap<>();
+    private final Map<String, ActivatePredicate> cachedActivatePredicates = Collections.synchronizedMap(new LinkedHashMap<>());
+    /**
+     * names of the activate extensions, in the order given by {@link ActivateSorter}
+     */
+    private volatile String[] cachedActivateNames;
+    /**
+     * the criteria parameter keys referenced by the activate values, null until the activates are cached
+     */
+    private volatile String[] cachedActivateKeys;
+    /**
+     * activate extensions by group, names and referenced criteria parameters, replaced when the extensions change
+     */
+    private volatile ClockCache<ActivateKey, ActivateExtensions> cachedActivateExtensions = new ClockCache<>(ACTIVATE_CACHE_CAPACITY);
+    private final CreateOnceCache<String, Object> cachedInstances = new CreateOnceCache<>();
+    /**
+     * name -> {@link Scope#value()} of the extension
+     */
+    private final ConcurrentMap<String, String> cachedScopes = new ConcurrentHashMap<>();
+    /**
+     * the {@link Scope#THREAD} instances, held by the factory so they are released with it instead of being kept by
+     * the threads
+     */
+    private final ConcurrentMap<String, ThreadInstances<T>> threadInstances = new ConcurrentHashMap<>();
+    /**
+     * the thread instances without wrappers, see {@link #getExtension(String, boolean)}
+     */
+    private final ConcurrentMap<String, ThreadInstances<T>> unwrappedThreadInstances = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, InstancePool<T>> instancePools = new ConcurrentHashMap<>();
+    /**
+     * name -> proxy of a pooled extension, see {@link #getExtensionForCall(String)}
+     */
+    private final ConcurrentMap<String, T> pooledProxies = new ConcurrentHashMap<>();
+    /**
+     * in-flight {@link #getExtensionAsync(String, Executor)} of the singletons, by name
+     */
+    private final ConcurrentMap<String, CompletableFuture<T>> pendingExtensions = new ConcurrentHashMap<>();
+    private final AtomicReference<CompletableFuture<List<T>>> pendingInitializeAll = new AtomicReference<>();
     private final Holder<Object> cachedAdaptiveInstance = new Holder<>();
 
     private volatile Throwable createAdaptiveInstanceError;
 
-    ExtensionFactory(Class<?> type) {
+    ExtensionFactory(Class<?> type, ExtensionScope scope) {
         this.type = type;
-        this.extensionClassLoader = new ExtensionClassLoader(type);
-        this.injectProvider = (type == InjectProvider.class ? null : ExtensionFactory.getExtensionFactory(InjectProvider.class).getAdaptiveExtension());
+        this.scope = scope;
+        this.extensionClassLoader = new ExtensionClassLoader(type, scope.getClassLoader());
+        this.injectProvider = (type == InjectProvider.class ? null : scope.getExtensionFactory(InjectProvider.class).getAdaptiveExtension());
         this.cachedDefaultName = cacheDefaultExtensionName();
     }
 
-    private static <T> boolean withExtensionAnnotation(Class<T> type) {
-        return type.isAnnotationPresent(SPI.class);
-    }
-
-    @SuppressWarnings("unchecked")
+    /**
+     * @return the factory of the extension interface in the {@link ExtensionScope#getDefault() default scope}
+     */
     public static <T> ExtensionFactory<T> getExtensionFactory(Class<T> type) {
-        if (type == null) {
-            throw new IllegalArgumentException("Extension type == null");
-        }
-        if (!type.isInterface()) {
-            throw new IllegalArgumentException("Extension type (" + type + ") is not an interface!");
-        }
-        if (!withExtensionAnnotation(type)) {
-            throw new IllegalArgumentException("Extension type (" + type +
-                                                       ") is not an extension, because it is NOT annotated with @" + SPI.class.getSimpleName() + "!");
-        }
-
-        ExtensionFactory<T> factory = (ExtensionFactory<T>) EXTENSION_FACTORY.get(type);
-        if (factory == null) {
-            EXTENSION_FACTORY.putIfAbsent(type, new ExtensionFactory<T>(type));
-            factory = (ExtensionFactory<T>) EXTENSION_FACTORY.get(type);
-        }
-        return factory;
+        return ExtensionScope.getDefault().getExtensionFactory(type);
     }
 
     // For testing purposes only
     public static void resetExtensionFactory(Class<?> type) {
-        ExtensionFactory<?> loader = EXTENSION_FACTORY.get(type);
-        if (loader != null) {
-            // Remove all instances associated with this loader as well
-            Map<String, Class<?>> classes = loader.extensionClassLoader.getExtensionClasses();
-            for (Map.Entry<String, Class<?>> entry : classes.entrySet()) {
-                EXTENSION_INSTANCES.remove(entry.getValue());
-            }
-            classes.clear();
-            EXTENSION_FACTORY.remove(type);
-        }
+        ExtensionScope.getDefault().reset(type);
     }
 
+    /**
+     * Destroy the created singleton extensions, see {@link ExtensionLifecycle#destroyAll()}, and reset the extension
+     * factories of the default scope.
+     * <p>
+     * The default scope keeps its singleton instances: it lives as long as the application, whose static fields may
+     * still reference them, and the factories created again share them instead of creating inconsistent copies. The
+     * extensions of a plugin are released with its own {@link ExtensionScope}, see {@link ExtensionScope#close()}.
+     */
     public static void destroyAll() {
-        EXTENSION_INSTANCES.forEach((_type, instance) -> {
-            if (instance instanceof Lifecycle) {
-                Lifecycle lifecycle = (Lifecycle) instance;
-                try {
-                    lifecycle.destroy();
-                } catch (Exception e) {
-                    logger.error("Error destroying extension " + lifecycle, e);
-                }
+        ExtensionLifecycle.destroyAll();
+        ExtensionScope.getDefault().resetFactories();
+    }
+
+    /**
+     * @return the created extension factories of the default scope
+     */
+    static Collection<ExtensionFactory<?>> getFactories() {
+        return ExtensionScope.getDefault().getFactories();
+    }
+
+    /**
+     * @return the extension interfaces whose factory is created in the default scope
+     */
+    static Set<Class<?>> getFactoryTypes() {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        for (ExtensionFactory<?> factory : getFactories()) {
+            types.add(factory.type);
+        }
+        return types;
+    }
+
+    /**
+     * Preload the given extension interfaces with the common fork join pool.
+     *
+     * @see #preload(Collection, Executor)
+     */
+    public static Map<Class<?>, Long> preload(Collection<Class<?>> types) {
+        return preload(types, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Load the extension classes of the given extension interfaces concurrently: find and parse their config files,
+     * load and initialize the extension classes. The extension instances are not created. In lazy discovery mode, see
+     * {@link ExtensionClassLoader#LAZY_DISCOVERY_PROPERTY}, the classes of the indexed extensions are not loaded.
+     * <p>
+     * The extension index and the inject provider, shared by all the interfaces, are loaded first by the calling
+     * thread. The loading tasks run with the context class loader of the calling thread.
+     *
+     * @param types    extension interfaces, duplicates are loaded once
+     * @param executor executor of the loading tasks
+     * @return the loading time in nanoseconds of every interface, in the given order
+     * @throws IllegalStateException if any interface failed to load, once all of them are done
+     */
+    public static Map<Class<?>, Long> preload(Collection<Class<?>> types, Executor executor) {
+        Set<Class<?>> distinctTypes = new LinkedHashSet<>(types);
+        ClassLoader classLoader = ClassUtils.getClassLoader(ExtensionFactory.class);
+        long start = System.nanoTime();
+        ExtensionIndex.getIndex(classLoader);
+        getExtensionFactory(InjectProvider.class).getAdaptiveExtension();
+
+        Map<Class<?>, Long> elapsed = new ConcurrentHashMap<>();
+        Map<Class<?>, Throwable> failures = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] tasks = distinctTypes.stream().map(type -> CompletableFuture.runAsync(() -> {
+            Thread thread = Thread.currentThread();
+            ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(classLoader);
+            long typeStart = System.nanoTime();
+            try {
+                getExtensionFactory(type).extensionClassLoader.getExtensionNames();
+                elapsed.put(type, System.nanoTime() - typeStart);
+            } catch (Throwable t) {
+                failures.put(type, t);
+            } finally {
+                thread.setContextClassLoader(previous);
             }
-        });
+        }, executor)).toArray(CompletableFuture<?>[]::new);
+        CompletableFuture.allOf(tasks).join();
 
-        // TODO Improve extension loader, clear static refer extension instance.
-        // Some extension instances may be referenced by static fields, if clear EXTENSION_INSTANCES may cause inconsistent.
-        // e.g. org.neuronbit.xpi.registry.client.metadata.MetadataUtils.localMetadataService
-        // EXTENSION_INSTANCES.clear();
+        if (!failures.isEmpty()) {
+            IllegalStateException e = new IllegalStateException("Failed to preload extensions " + failures.keySet());
+            failures.values().forEach(e::addSuppressed);
+            throw e;
+        }
+        Map<Class<?>, Long> result = new LinkedHashMap<>();
+        for (Class<?> type : distinctTypes) {
+            result.put(type, elapsed.get(type));
+            if (logger.isDebugEnabled()) {
+                logger.debug("Preloaded extension " + type.getName() + " in " + TimeUnit.NANOSECONDS.toMicros(elapsed.get(type)) + "us");
+            }
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Preloaded " + result.size() + " extensions in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        }
+        return result;
+    }
 
-        EXTENSION_FACTORY.clear();
+    /**
+     * Warm up the adaptive extensions of the given extension interfaces: generate the sources of all their adaptive
+     * classes and compile them together with {@link Compiler#compileAdaptive(Map, ClassLoader)}, so a compiler with a
+     * start up cost per compilation, javac for instance, starts once instead of once per interface.
+     * <p>
+     * The interfaces with an adaptive extension are skipped, as well as those whose adaptive class is generated at
+     * build time, is in the discovery cache or is already created. The adaptive extension instances are not created.
+     *
+     * @param types extension interfaces, duplicates are compiled once
+     * @return the compiled adaptive classes, by extension interface
+     */
+    public static Map<Class<?>, Class<?>> compileAdaptiveExtensions(Collection<Class<?>> types) {
+        long start = System.nanoTime();
+        Map<Class<?>, String> defaultExtNames = new LinkedHashMap<>();
+        for (Class<?> type : new LinkedHashSet<>(types)) {
+            ExtensionFactory<?> factory = getExtensionFactory(type);
+            if (factory.extensionClassLoader.isAdaptiveClassToCompile()) {
+                defaultExtNames.put(type, factory.cachedDefaultName);
+            }
+        }
+        if (defaultExtNames.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Compiler compiler = getExtensionFactory(Compiler.class).getAdaptiveExtension();
+        Map<Class<?>, Class<?>> classes = compiler.compileAdaptive(defaultExtNames, ClassUtils.getClassLoader(ExtensionFactory.class));
+        classes.forEach((type, clazz) -> getExtensionFactory(type).extensionClassLoader.setCompiledAdaptiveClass(clazz));
+        if (logger.isInfoEnabled()) {
+            logger.info("Compiled " + classes.size() + " adaptive classes in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        }
+        return classes;
     }
 
     public String getExtensionName(Class<?> extensionClass) {
@@ -203,88 +337,124 @@ public class ExtensionFactory<T> {
      * @param url    url
      * @param values extension point names
      * @param group  group
-     * @return extension list which are activated
+     * @return unmodifiable extension list which are activated. The activated names are cached by group, names and the
+     * criteria parameters referenced by the activate values, the list itself is cached if all of them are singletons
+     * or pooled, see {@link #getExtensionForCall(String)}
      * @see Activate
      */
     public List<T> getActivateExtension(ActivateCriteria url, String[] values, String group) {
-        List<T> activateExtensions = new ArrayList<>();
-        // solve the bug of using @SPI's wrapper method to report a null pointer exception.
-        TreeMap<Class<?>, T> activateExtensionsMap = new TreeMap<>(ActivateComparator.COMPARATOR);
+        ClockCache<ActivateKey, ActivateExtensions> cache = cachedActivateExtensions;
+        ActivateKey key = new ActivateKey(group, values, getActivateParameters(url));
+        ActivateExtensions activateExtensions = cache.get(key);
+        if (activateExtensions == null) {
+            activateExtensions = new ActivateExtensions(loadActivateNames(url, values, group));
+            cache.put(key, activateExtensions);
+        }
+        return activateExtensions.get();
+    }
+
+    private List<String> loadActivateNames(ActivateCriteria url, String[] values, String group) {
+        List<String> activateNames = new ArrayList<>();
         List<String> names = values == null ? new ArrayList<>(0) : asList(values);
         if (!names.contains(REMOVE_VALUE_PREFIX + DEFAULT_KEY)) {
-            if (cachedActivateGroups.size() == 0) {
-                synchronized (cachedActivateGroups) {
-                    if (cachedActivateGroups.size() == 0) {
-                        for (Map.Entry<String, Object> entry : extensionClassLoader.getActivates().entrySet()) {
-                            String name = entry.getKey();
-                            Object activate = entry.getValue();
-
-                            String[] activateGroup, activateValue;
-
-                            if (activate instanceof Activate) {
-                                activateGroup = ((Activate) activate).group();
-                                activateValue = ((Activate) activate).value();
-                            } else {
-                                continue;
-                            }
-                            cachedActivateGroups.put(name, new HashSet<>(Arrays.asList(activateGroup)));
-                            cachedActivateValues.put(name, activateValue);
-                        }
-                    }
-                }
-            }
+            cacheActivates();
 
-            cachedActivateGroups.forEach((name, activateGroup) -> {
-                if (isMatchGroup(group, activateGroup)
+            // an extension class registered under several names is activated once
+            Set<Class<?>> activateClasses = new HashSet<>();
+            for (String name : cachedActivateNames) {
+                if (isMatchGroup(group, cachedActivateGroups.get(name))
                             && !names.contains(name)
                             && !names.contains(REMOVE_VALUE_PREFIX + name)
-                            && isActive(cachedActivateValues.get(name), url)) {
-
-                    activateExtensionsMap.put(getExtensionClass(name), getExtension(name));
+                            && cachedActivatePredicates.get(name).test(url)
+                            && activateClasses.add(getExtensionClass(name))) {
+                    activateNames.add(name);
                 }
-            });
-
-            if (!activateExtensionsMap.isEmpty()) {
-                activateExtensions.addAll(activateExtensionsMap.values());
             }
         }
-        List<T> loadedExtensions = new ArrayList<>();
+        List<String> loadedNames = new ArrayList<>();
         for (int i = 0; i < names.size(); i++) {
             String name = names.get(i);
             if (!name.startsWith(REMOVE_VALUE_PREFIX)
                         && !names.contains(REMOVE_VALUE_PREFIX + name)) {
                 if (DEFAULT_KEY.equals(name)) {
-                    if (!loadedExtensions.isEmpty()) {
-                        activateExtensions.addAll(0, loadedExtensions);
-                        loadedExtensions.clear();
+                    if (!loadedNames.isEmpty()) {
+                        activateNames.addAll(0, loadedNames);
+                        loadedNames.clear();
                     }
                 } else {
-                    loadedExtensions.add(getExtension(name));
+                    loadedNames.add(name);
                 }
             }
         }
-        if (!loadedExtensions.isEmpty()) {
-            activateExtensions.addAll(loadedExtensions);
+        if (!loadedNames.isEmpty()) {
+            activateNames.addAll(loadedNames);
         }
-        return activateExtensions;
+        return activateNames;
     }
 
-    public List<T> getActivateExtensions() {
-        List<T> activateExtensions = new ArrayList<>();
-        TreeMap<Class<?>, T> activateExtensionsMap = new TreeMap<>(ActivateComparator.COMPARATOR);
-
-        for (Map.Entry<String, Object> entry : extensionClassLoader.getActivates().entrySet()) {
-            String name = entry.getKey();
-            Object activate = entry.getValue();
-            if (!(activate instanceof Activate)) {
-                continue;
+    /**
+     * values of the criteria parameters referenced by the activate values, the only ones which affect the activation
+     */
+    private String[] getActivateParameters(ActivateCriteria url) {
+        String[] keys = cacheActivates();
+        String[] parameters = new String[keys.length];
+        if (url != null) {
+            for (int i = 0; i < keys.length; i++) {
+                parameters[i] = url.getParameter(keys[i]);
             }
-            activateExtensionsMap.put(getExtensionClass(name), getExtension(name));
         }
-        if (!activateExtensionsMap.isEmpty()) {
-            activateExtensions.addAll(activateExtensionsMap.values());
+        return parameters;
+    }
+
+    private String[] cacheActivates() {
+        String[] keys = cachedActivateKeys;
+        if (keys != null) {
+            return keys;
+        }
+        synchronized (cachedActivateGroups) {
+            if (cachedActivateKeys == null) {
+                Set<String> activateKeys = new TreeSet<>();
+                Map<String, Activate> activates = new LinkedHashMap<>();
+                Map<String, String> classNames = new HashMap<>();
+                Map<String, ActivatePredicate> predicates = extensionClassLoader.getActivatePredicates();
+                for (Map.Entry<String, Object> entry : extensionClassLoader.getActivates().entrySet()) {
+                    String name = entry.getKey();
+                    Object activate = entry.getValue();
+
+                    if (!(activate instanceof Activate)) {
+                        continue;
+                    }
+                    ActivatePredicate predicate = predicates.get(name);
+                    activates.put(name, (Activate) activate);
+                    classNames.put(name, extensionClassLoader.getExtensionClassName(name));
+                    cachedActivateGroups.put(name, new HashSet<>(Arrays.asList(((Activate) activate).group())));
+                    cachedActivatePredicates.put(name, predicate);
+                    activateKeys.addAll(Arrays.asList(predicate.getKeys()));
+                }
+                try {
+                    cachedActivateNames = ActivateSorter.sort(activates, classNames).toArray(new String[0]);
+                } catch (IllegalStateException e) {
+                    throw new IllegalStateException("Failed to sort the activate extensions of " + type.getName() + ": " + e.getMessage(), e);
+                }
+                cachedActivateKeys = activateKeys.toArray(new String[0]);
+            }
+            return cachedActivateKeys;
         }
+    }
 
+    /**
+     * @return all the activate extensions, a {@link Scope#POOLED} one is a proxy borrowing an instance for every
+     * method call
+     */
+    public List<T> getActivateExtensions() {
+        cacheActivates();
+        List<T> activateExtensions = new ArrayList<>();
+        Set<Class<?>> activateClasses = new HashSet<>();
+        for (String name : cachedActivateNames) {
+            if (activateClasses.add(getExtensionClass(name))) {
+                activateExtensions.add(getExtensionForCall(name));
+            }
+        }
         return activateExtensions;
     }
 
@@ -298,28 +468,6 @@ public class ExtensionFactory<T> {
         return false;
     }
 
-    private boolean isActive(String[] keys, ActivateCriteria url) {
-        if (keys.length == 0) {
-            return true;
-        }
-        for (String key : keys) {
-            // @Active(value="key1:value1, key2:value2")
-            String keyValue = null;
-            if (key.contains(":")) {
-                String[] arr = key.split(":");
-                key = arr[0];
-                keyValue = arr[1];
-            }
-
-            String realValue = url.getParameter(key);
-
-            if ((keyValue != null && keyValue.equals(realValue)) || (keyValue == null && StringUtils.isNotNil(realValue))) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Get extension's instance. Return <code>null</code> if extension is not found or is not initialized. Pls. note
      * that this method will not trigger extension load.
@@ -333,17 +481,7 @@ public class ExtensionFactory<T> {
         if (StringUtils.isEmpty(name)) {
             throw new IllegalArgumentException("Extension name == null");
         }
-        Holder<Object> holder = getOrCreateHolder(name);
-        return (T) holder.get();
-    }
-
-    private Holder<Object> getOrCreateHolder(String name) {
-        Holder<Object> holder = cachedInstances.get(name);
-        if (holder == null) {
-            cachedInstances.putIfAbsent(name, new Holder<>());
-            holder = cachedInstances.get(name);
-        }
-        return holder;
+        return (T) cachedInstances.get(name);
     }
 
     /**
@@ -354,14 +492,12 @@ public class ExtensionFactory<T> {
      * @see #getSupportedExtensions()
      */
     public Set<String> getLoadedExtensions() {
-        return Collections.unmodifiableSet(new TreeSet<>(cachedInstances.keySet()));
+        return Collections.unmodifiableSet(new TreeSet<>(cachedInstances.asMap().keySet()));
     }
 
     @SuppressWarnings("unchecked")
     public List<T> getLoadedExtensionInstances() {
-        List<T> instances = new ArrayList<>();
-        cachedInstances.values().forEach(holder -> instances.add((T) holder.get()));
-        return instances;
+        return new ArrayList<>((Collection<T>) cachedInstances.asMap().values());
     }
 
     public Object getLoadedAdaptiveExtensionInstances() {
@@ -384,39 +520,325 @@ public class ExtensionFactory<T> {
         if ("true".equals(name)) {
             return getDefaultExtension();
         }
-        final Holder<Object> holder = getOrCreateHolder(name);
-        Object instance = holder.get();
-        if (instance == null) {
-            synchronized (holder) {
-                instance = holder.get();
-                if (instance == null) {
-                    instance = createExtension(name, wrap);
-                    holder.set(instance);
+        // created once, the threads asking for other extensions or for created ones never wait
+        Object instance = cachedInstances.get(name);
+        if (instance != null) {
+            return (T) instance;
+        }
+        switch (getScope(name)) {
+            case Scope.PROTOTYPE:
+                return createExtension(name, wrap, false);
+            case Scope.THREAD:
+                return (wrap ? threadInstances : unwrappedThreadInstances)
+                        .computeIfAbsent(name, n -> new ThreadInstances<>(() -> createExtension(n, wrap, false))).get();
+            case Scope.POOLED:
+                throw new IllegalStateException("Extension " + name + " of " + type.getName() + " is pooled, borrow it with borrowExtension(name)");
+            default:
+                return (T) cachedInstances.computeIfAbsent(name, n -> createExtension(n, wrap, true));
+        }
+    }
+
+    /**
+     * Create the extension asynchronously with the common fork join pool.
+     *
+     * @see #getExtensionAsync(String, Executor)
+     */
+    public CompletableFuture<T> getExtensionAsync(String name) {
+        return getExtensionAsync(name, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create the extension on the given executor, as {@link #getExtension(String)} does: the instances injected into
+     * the extension and its wrappers are got first, in parallel, then the extension is created, injected, wrapped
+     * and initialized.
+     * <p>
+     * The concurrent calls for the same singleton share the same future, the created singletons are returned as
+     * completed futures. A {@link Scope#POOLED} extension is a proxy borrowing an instance for every method call.
+     *
+     * @param name     extension name
+     * @param executor executor of the creation tasks
+     * @return the extension, or the failure of its creation
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<T> getExtensionAsync(String name, Executor executor) {
+        if (StringUtils.isEmpty(name)) {
+            throw new IllegalArgumentException("Extension name == null");
+        }
+        if ("true".equals(name)) {
+            if (StringUtils.isBlank(cachedDefaultName) || "true".equals(cachedDefaultName)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            name = cachedDefaultName;
+        }
+        T instance = (T) cachedInstances.get(name);
+        if (instance != null) {
+            return CompletableFuture.completedFuture(instance);
+        }
+        String extensionName = name;
+        if (!Scope.SINGLETON.equals(getScope(extensionName))) {
+            return createExtensionAsync(extensionName, executor);
+        }
+        CompletableFuture<T> future = pendingExtensions.get(extensionName);
+        if (future == null) {
+            CompletableFuture<T> created = new CompletableFuture<>();
+            future = pendingExtensions.putIfAbsent(extensionName, created);
+            if (future == null) {
+                future = created;
+                createExtensionAsync(extensionName, executor).whenComplete((value, t) -> {
+                    // the created singleton is cached before the future is removed
+                    pendingExtensions.remove(extensionName, created);
+                    if (t != null) {
+                        created.completeExceptionally(t);
+                    } else {
+                        created.complete(value);
+                    }
+                });
+            }
+        }
+        return future;
+    }
+
+    /**
+     * Create and initialize all the singleton extensions of the interface asynchronously with the common fork join
+     * pool.
+     *
+     * @see #initializeAllAsync(Executor)
+     */
+    public CompletableFuture<List<T>> initializeAllAsync() {
+        return initializeAllAsync(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create and initialize all the singleton extensions of the interface in parallel on the given executor, each
+     * one with {@link #getExtensionAsync(String, Executor)}. The extensions of the other scopes are skipped.
+     * <p>
+     * The concurrent calls share the same future while it is in flight.
+     *
+     * @return the singletons in the order of {@link #getSupportedExtensions()}, or the first failure once all of them
+     * are done
+     */
+    public CompletableFuture<List<T>> initializeAllAsync(Executor executor) {
+        CompletableFuture<List<T>> future = pendingInitializeAll.get();
+        if (future != null && !future.isDone()) {
+            return future;
+        }
+        CompletableFuture<List<T>> created = new CompletableFuture<>();
+        if (!pendingInitializeAll.compareAndSet(future, created)) {
+            return pendingInitializeAll.get();
+        }
+        CompletableFuture.supplyAsync(() -> {
+            List<CompletableFuture<T>> extensions = new ArrayList<>();
+            for (String name : getSupportedExtensions()) {
+                if (Scope.SINGLETON.equals(getScope(name))) {
+                    extensions.add(getExtensionAsync(name, executor));
                 }
             }
+            return extensions;
+        }, executor).thenCompose(extensions -> CompletableFuture.allOf(extensions.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> extensions.stream().map(CompletableFuture::join).collect(Collectors.toList())))
+                .whenComplete((instances, t) -> {
+                    if (t != null) {
+                        created.completeExceptionally(t);
+                    } else {
+                        created.complete(instances);
+                    }
+                });
+        return created;
+    }
+
+    /**
+     * get the injected instances in parallel, then create the extension
+     */
+    private CompletableFuture<T> createExtensionAsync(String name, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> getInjectedSetters(name), executor)
+                .thenCompose(setters -> CompletableFuture.allOf(setters.stream()
+                        .map(setter -> CompletableFuture.runAsync(() -> {
+                            try {
+                                injectProvider.getInstance(setter.getType(), setter.getProperty());
+                            } catch (Throwable t) {
+                                // logged when injected
+                            }
+                        }, executor))
+                        .toArray(CompletableFuture<?>[]::new)))
+                .thenApplyAsync(v -> getExtensionForCall(name), executor);
+    }
+
+    /**
+     * @return the setters of the extension class and of the wrapper classes, by distinct type and property
+     */
+    Collection<InjectionPlan.Setter> getInjectedSetters(String name) {
+        if (injectProvider == null) {
+            return Collections.emptyList();
+        }
+        List<Class<?>> classes = new ArrayList<>();
+        classes.add(getExtensionClass(name));
+        Set<Class<?>> wrapperClasses = extensionClassLoader.getExtensionWrapperClasses();
+        if (CollectionUtils.isNotEmpty(wrapperClasses)) {
+            classes.addAll(wrapperClasses);
+        }
+        Map<String, InjectionPlan.Setter> setters = new LinkedHashMap<>();
+        for (Class<?> clazz : classes) {
+            for (InjectionPlan.Setter setter : InjectionPlan.of(clazz).getSetters()) {
+                setters.putIfAbsent(setter.getType().getName() + '#' + setter.getProperty(), setter);
+            }
         }
-        return (T) instance;
+        return setters.values();
+    }
+
+    /**
+     * @return the instance whose {@link Lifecycle} is managed: the created singleton as returned by
+     * {@link #getExtension(String)}, or the extension itself if its wrappers are not {@link Lifecycle}; null if neither
+     * is, or if the singleton is not created
+     */
+    Lifecycle getLifecycle(String name) {
+        Object instance = cachedInstances.get(name);
+        if (instance == null || instance instanceof Lifecycle) {
+            return (Lifecycle) instance;
+        }
+        Object extension = scope.getInstance(getExtensionClass(name));
+        return extension instanceof Lifecycle ? (Lifecycle) extension : null;
+    }
+
+    /**
+     * forget the {@link Scope#THREAD} instances of all the threads
+     */
+    void clearThreadInstances() {
+        threadInstances.clear();
+        unwrappedThreadInstances.clear();
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    ExtensionScope getScope() {
+        return scope;
+    }
+
+    Map<String, Class<?>> getLoadedExtensionClasses() {
+        return extensionClassLoader.getLoadedExtensionClasses();
+    }
+
+    /**
+     * @return the setters of the adaptive extension of the configuration files, empty if the adaptive class is
+     * generated
+     */
+    Collection<InjectionPlan.Setter> getAdaptiveInjectedSetters() {
+        Class<?> clazz = extensionClassLoader.getConfiguredAdaptiveClass();
+        if (injectProvider == null || clazz == null) {
+            return Collections.emptyList();
+        }
+        return asList(InjectionPlan.of(clazz).getSetters());
+    }
+
+    /**
+     * Borrow an instance of an extension of the {@link Scope#POOLED} scope, to be returned by closing it. The
+     * borrower waits if all the instances of the pool are borrowed.
+     *
+     * @throws IllegalStateException if the extension is not pooled
+     */
+    public PooledExtension<T> borrowExtension(String name) {
+        if (StringUtils.isEmpty(name)) {
+            throw new IllegalArgumentException("Extension name == null");
+        }
+        InstancePool<T> pool = instancePools.get(name);
+        if (pool == null) {
+            if (!Scope.POOLED.equals(getScope(name))) {
+                throw new IllegalStateException("Extension " + name + " of " + type.getName() + " is not pooled");
+            }
+            pool = instancePools.computeIfAbsent(name, n -> new InstancePool<>(() -> createExtension(n, true, false), findScope(n).poolSize()));
+        }
+        return new PooledExtension<>(pool, pool.borrow());
+    }
+
+    /**
+     * Get the extension for the callers which keep it or return several extensions, the adaptive extensions and the
+     * extension lists for instance: same as {@link #getExtension(String)}, except that a {@link Scope#POOLED} extension is a proxy borrowing an instance
+     * for every method call.
+     */
+    T getExtensionForCall(String name) {
+        String extensionName = "true".equals(name) ? cachedDefaultName : name;
+        if (StringUtils.isNotEmpty(extensionName) && !"true".equals(extensionName)
+                    && cachedInstances.get(extensionName) == null && Scope.POOLED.equals(getScope(extensionName))) {
+            return pooledProxies.computeIfAbsent(extensionName, this::createPooledProxy);
+        }
+        return getExtension(name);
+    }
+
+    /**
+     * @return true if {@link #getExtensionForCall(String)} returns the same instance to every caller and thread, so
+     * it can be cached
+     */
+    boolean isSharedExtension(String name) {
+        String extensionName = "true".equals(name) ? cachedDefaultName : name;
+        if (StringUtils.isBlank(extensionName) || "true".equals(extensionName) || cachedInstances.get(extensionName) != null) {
+            return true;
+        }
+        String scope = getScope(extensionName);
+        return Scope.SINGLETON.equals(scope) || Scope.POOLED.equals(scope);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T createPooledProxy(String name) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "Pooled extension " + name + " of " + type.getName();
+                }
+            }
+            try (PooledExtension<T> pooled = borrowExtension(name)) {
+                return method.invoke(pooled.get(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    /**
+     * @return the {@link Scope#value()} of the extension class, or of the extension interface, singleton by default
+     */
+    String getScope(String name) {
+        String scope = cachedScopes.get(name);
+        if (scope == null) {
+            Scope annotation = findScope(name);
+            scope = annotation == null ? Scope.SINGLETON : annotation.value();
+            if (!Scope.SINGLETON.equals(scope) && !Scope.PROTOTYPE.equals(scope) && !Scope.THREAD.equals(scope) && !Scope.POOLED.equals(scope)) {
+                throw new IllegalStateException("Unknown scope " + scope + " of extension " + name + " of " + type.getName());
+            }
+            cachedScopes.put(name, scope);
+        }
+        return scope;
+    }
+
+    private Scope findScope(String name) {
+        Scope scope = getExtensionClass(name).getAnnotation(Scope.class);
+        return scope != null ? scope : type.getAnnotation(Scope.class);
     }
 
     /**
      * Get the extension by specified name if found, or {@link #getDefaultExtension() returns the default one}
      *
      * @param name the name of extension
-     * @return non-null
+     * @return non-null, a {@link Scope#POOLED} extension is a proxy borrowing an instance for every method call
      */
     public T getOrDefaultExtension(String name) {
-        return containsExtension(name) ? getExtension(name) : getDefaultExtension();
+        return containsExtension(name) ? getExtensionForCall(name) : getDefaultExtension();
     }
 
     /**
-     * Return default extension, return <code>null</code> if it's not configured.
+     * Return default extension, return <code>null</code> if it's not configured. A {@link Scope#POOLED} extension
+     * is a proxy borrowing an instance for every method call.
      */
     public T getDefaultExtension() {
         if (StringUtils.isBlank(cachedDefaultName) || "true".equals(cachedDefaultName)) {
             return null;
         }
-        //getExtensionClasses();
-        return getExtension(cachedDefaultName);
+        return getExtensionForCall(cachedDefaultName);
     }
 
     public boolean hasExtension(String name) {
@@ -434,16 +856,19 @@ public class ExtensionFactory<T> {
     }
 
     public Set<String> getSupportedExtensions() {
-        Map<String, Class<?>> clazzes = extensionClassLoader.getExtensionClasses();
-        return Collections.unmodifiableSet(new TreeSet<>(clazzes.keySet()));
+        return Collections.unmodifiableSet(new TreeSet<>(extensionClassLoader.getExtensionNames()));
     }
 
+    /**
+     * @return the instances of all the extensions, a {@link Scope#POOLED} one is a proxy borrowing an instance for
+     * every method call
+     */
     public Set<T> getSupportedExtensionInstances() {
         List<T> instances = new LinkedList<>();
         Set<String> supportedExtensions = getSupportedExtensions();
         if (CollectionUtils.isNotEmpty(supportedExtensions)) {
             for (String name : supportedExtensions) {
-                instances.add(getExtension(name));
+                instances.add(getExtensionForCall(name));
             }
         }
         // sort the Prioritized instances
@@ -460,6 +885,7 @@ public class ExtensionFactory<T> {
 
     public void addExtension(String name, Class<?> clazz) {
         extensionClassLoader.addExtension(name, clazz);
+        cachedActivateExtensions = new ClockCache<>(ACTIVATE_CACHE_CAPACITY);
     }
 
     @SuppressWarnings("unchecked")
@@ -488,34 +914,29 @@ public class ExtensionFactory<T> {
         return (T) instance;
     }
 
+    /**
+     * @param shared true for the singletons, whose instance is shared by the interfaces of the extension class
+     */
     @SuppressWarnings("unchecked")
-    private T createExtension(String name, boolean wrap) {
+    private T createExtension(String name, boolean wrap, boolean shared) {
         Class<?> clazz = getExtensionClass(name);
+        ExtensionScope previous = scope.enter();
         try {
-            T instance = (T) EXTENSION_INSTANCES.get(clazz);
-            if (instance == null) {
-                EXTENSION_INSTANCES.putIfAbsent(clazz, clazz.getDeclaredConstructor().newInstance());
-                instance = (T) EXTENSION_INSTANCES.get(clazz);
+            T instance;
+            if (shared) {
+                instance = (T) scope.getInstance(clazz);
+                if (instance == null) {
+                    instance = (T) scope.putInstanceIfAbsent(clazz, clazz.getDeclaredConstructor().newInstance());
+                }
+            } else {
+                instance = (T) clazz.getDeclaredConstructor().newInstance();
             }
             injectExtension(instance);
 
             if (wrap) {
-                final Set<Class<?>> cachedWrapperClasses = extensionClassLoader.getExtensionWrapperClasses();
-                List<Class<?>> wrapperClassesList = new ArrayList<>();
-                if (cachedWrapperClasses != null) {
-                    wrapperClassesList.addAll(cachedWrapperClasses);
-                    wrapperClassesList.sort(WrapperComparator.COMPARATOR);
-                    Collections.reverse(wrapperClassesList);
-                }
-
-                if (CollectionUtils.isNotEmpty(wrapperClassesList)) {
-                    for (Class<?> wrapperClass : wrapperClassesList) {
-                        Wrapper wrapper = wrapperClass.getAnnotation(Wrapper.class);
-                        if (wrapper == null
-                                    || (ArrayUtils.contains(wrapper.matches(), name) && !ArrayUtils.contains(wrapper.mismatches(), name))) {
-                            instance = injectExtension((T) wrapperClass.getConstructor(type).newInstance(instance));
-                        }
-                    }
+                for (MethodHandle wrapperConstructor : extensionClassLoader.getWrapperConstructors(name)) {
+                    Object wrapper = wrapperConstructor.invokeExact((Object) instance);
+                    instance = injectExtension((T) wrapper);
                 }
             }
 
@@ -524,6 +945,8 @@ public class ExtensionFactory<T> {
         } catch (Throwable t) {
             throw new IllegalStateException("Extension instance (name: " + name + ", class: " +
                                                     type + ") couldn't be instantiated: " + t.getMessage(), t);
+        } finally {
+            ExtensionScope.exit(previous);
         }
     }
 
@@ -536,36 +959,16 @@ public class ExtensionFactory<T> {
             return instance;
         }
 
-        try {
-            for (Method method : instance.getClass().getMethods()) {
-                if (!isSetter(method)) {
-                    continue;
-                }
-                /**
-                 * Check {@link DisableInject} to see if we need auto injection for this property
-                 */
-                if (method.getAnnotation(DisableInject.class) != null) {
-                    continue;
-                }
-                Class<?> pt = method.getParameterTypes()[0];
-                if (ReflectUtils.isPrimitives(pt)) {
-                    continue;
-                }
-
-                try {
-                    String property = getSetterProperty(method);
-                    Object object = injectProvider.getInstance(pt, property);
-                    if (object != null) {
-                        method.invoke(instance, object);
-                    }
-                } catch (Exception e) {
-                    logger.error("Failed to inject via method " + method.getName()
-                                         + " of interface " + type.getName() + ": " + e.getMessage(), e);
+        for (InjectionPlan.Setter setter : InjectionPlan.of(instance.getClass()).getSetters()) {
+            try {
+                Object object = injectProvider.getInstance(setter.getType(), setter.getProperty());
+                if (object != null) {
+                    setter.invoke(instance, object);
                 }
-
+            } catch (Throwable t) {
+                logger.error("Failed to inject via method " + setter.getName()
+                                     + " of interface " + type.getName() + ": " + t.getMessage(), t);
             }
-        } catch (Exception e) {
-            logger.error(e.getMessage(), e);
         }
         return instance;
     }
@@ -577,30 +980,6 @@ public class ExtensionFactory<T> {
         }
     }
 
-    /**
-     * get properties name for setter, for instance: setVersion, return "version"
-     * <p>
-     * return "", if setter name with length less than 3
-     */
-    private String getSetterProperty(Method method) {
-        return method.getName().length() > 3 ? method.getName().substring(3, 4).toLowerCase() + method.getName().substring(4) : "";
-    }
-
-    /**
-     * return true if and only if:
-     * <p>
-     * 1, public
-     * <p>
-     * 2, name starts with "set"
-     * <p>
-     * 3, only has one parameter
-     */
-    private boolean isSetter(Method method) {
-        return method.getName().startsWith("set")
-                       && method.getParameterTypes().length == 1
-                       && Modifier.isPublic(method.getModifiers());
-    }
-
     private Class<?> getExtensionClass(String name) {
         if (type == null) {
             throw new IllegalArgumentException("Extension type == null");
@@ -637,6 +1016,7 @@ public class ExtensionFactory<T> {
 
     @SuppressWarnings("unchecked")
     private T createAdaptiveExtension() {
+        ExtensionScope previous = scope.enter();
         try {
             return injectExtension(
                     (T) extensionClassLoader
@@ -645,6 +1025,8 @@ public class ExtensionFactory<T> {
                                 .newInstance());
         } catch (Exception e) {
             throw new IllegalStateException("Can't create adaptive extension " + type + ", cause: " + e.getMessage(), e);
+        } finally {
+            ExtensionScope.exit(previous);
         }
     }
 
@@ -653,4 +1035,72 @@ public class ExtensionFactory<T> {
         return this.getClass().getName() + "[" + type.getName() + "]";
     }
 
+    /**
+     * activate extensions of a cache key: their names, and the list itself if they are all shared
+     */
+    private final class ActivateExtensions {
+
+        private final List<String> names;
+
+        private final List<T> extensions;
+
+        ActivateExtensions(List<String> names) {
+            this.names = names;
+            this.extensions = names.stream().allMatch(ExtensionFactory.this::isSharedExtension) ? resolve() : null;
+        }
+
+        List<T> get() {
+            return extensions != null ? extensions : resolve();
+        }
+
+        private List<T> resolve() {
+            List<T> resolved = new ArrayList<>(names.size());
+            for (String name : names) {
+                resolved.add(getExtensionForCall(name));
+            }
+            return Collections.unmodifiableList(resolved);
+        }
+    }
+
+    /**
+     * key of the activate extensions cache
+     */
+    private static final class ActivateKey {
+
+        private final String group;
+
+        private final String[] names;
+
+        private final String[] parameters;
+
+        private final int hashCode;
+
+        ActivateKey(String group, String[] names, String[] parameters) {
+            this.group = group;
+            this.names = names == null ? new String[0] : names.clone();
+            this.parameters = parameters;
+            this.hashCode = 31 * (31 * Objects.hashCode(group) + Arrays.hashCode(this.names)) + Arrays.hashCode(parameters);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ActivateKey)) {
+                return false;
+            }
+            ActivateKey that = (ActivateKey) o;
+            return hashCode == that.hashCode
+                           && Objects.equals(group, that.group)
+                           && Arrays.equals(names, that.names)
+                           && Arrays.equals(parameters, that.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
 }
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension;
+
+import org.neuronbit.xpi.common.context.Lifecycle;
+import org.neuronbit.xpi.common.extension.inject.InjectionPlan;
+import org.neuronbit.xpi.common.logger.Logger;
+import org.neuronbit.xpi.common.logger.LoggerFactory;
+import org.neuronbit.xpi.common.utils.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * {@link Lifecycle#start() Start} and {@link Lifecycle#destroy() destroy} of the created singleton extensions, in
+ * dependency order and in parallel.
+ * <p>
+ * An extension depends on the created extensions of the interfaces injected into its class and its wrapper classes,
+ * as their adaptive extensions may call any of them. An extension is started once its dependencies are started, and
+ * destroyed once the extensions depending on it are destroyed, the independent extensions are started or destroyed at
+ * the same time. The dependency cycles, allowed by the adaptive injection, are broken arbitrarily.
+ * <p>
+ * Every step has a timeout, set with the system property {@link #TIMEOUT_PROPERTY} in milliseconds, 10 seconds by
+ * default: once timed out, the step is reported as failed and the next steps go on while it is still running. The
+ * steps run on daemon threads, so a stuck step does not prevent the shutdown.
+ * <p>
+ * The managed instance of an extension is the one returned by {@link ExtensionFactory#getExtension(String)}, or the
+ * extension itself if its wrappers are not {@link Lifecycle}. The extensions of the other {@link Scope scopes} are
+ * not managed.
+ */
+public final class ExtensionLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(ExtensionLifecycle.class);
+
+    public static final String TIMEOUT_PROPERTY = "xpi.lifecycle.timeout";
+
+    private static final long DEFAULT_TIMEOUT = 10000;
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final ThreadFactory THREAD_FACTORY = runnable -> {
+        Thread thread = new Thread(runnable, "xpi-lifecycle-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    private ExtensionLifecycle() {
+    }
+
+    /**
+     * Start the created singleton extensions of all the extension interfaces.
+     *
+     * @see #start(Collection, long, TimeUnit)
+     */
+    public static ExtensionBootstrap.Report startAll() {
+        return checkStarted(run("Started", plan(ExtensionFactory.getFactories()), false, Lifecycle::start, getTimeout(), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Start the created singleton extensions of the given extension interfaces, the dependencies are started first.
+     *
+     * @param timeout timeout of the start of every extension
+     * @return the timing of every start, logged at info level
+     * @throws IllegalStateException if any extension failed or timed out, once all of them are done
+     */
+    public static ExtensionBootstrap.Report start(Collection<Class<?>> types, long timeout, TimeUnit unit) {
+        return checkStarted(run("Started", plan(getFactories(types)), false, Lifecycle::start, timeout, unit));
+    }
+
+    /**
+     * Destroy the created singleton extensions of all the extension interfaces.
+     *
+     * @see #destroy(Collection, long, TimeUnit)
+     */
+    public static ExtensionBootstrap.Report destroyAll() {
+        return logDestroyed(run("Destroyed", plan(ExtensionFactory.getFactories()), true, Lifecycle::destroy, getTimeout(), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Destroy the created singleton extensions of the given extension interfaces, the dependencies are destroyed
+     * last. The failures are logged, not thrown.
+     *
+     * @param timeout timeout of the destruction of every extension
+     * @return the timing of every destruction, logged at info level
+     */
+    public static ExtensionBootstrap.Report destroy(Collection<Class<?>> types, long timeout, TimeUnit unit) {
+        return logDestroyed(run("Destroyed", plan(getFactories(types)), true, Lifecycle::destroy, timeout, unit));
+    }
+
+    /**
+     * destroy the created singletons of the given factories, the failures are logged
+     */
+    static ExtensionBootstrap.Report destroyFactories(Collection<ExtensionFactory<?>> factories, long timeout, TimeUnit unit) {
+        return logDestroyed(run("Destroyed", plan(factories), true, Lifecycle::destroy, timeout, unit));
+    }
+
+    static long getTimeout() {
+        return Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT);
+    }
+
+    private static List<ExtensionFactory<?>> getFactories(Collection<Class<?>> types) {
+        List<ExtensionFactory<?>> factories = new ArrayList<>();
+        for (Class<?> type : new LinkedHashSet<>(types)) {
+            factories.add(ExtensionFactory.getExtensionFactory(type));
+        }
+        return factories;
+    }
+
+    /**
+     * @return the created singletons, every one after its dependencies, by managed instance
+     */
+    static Map<ExtensionBootstrap.Node, Lifecycle> plan(Collection<ExtensionFactory<?>> factories) {
+        // the same instance may be the extension of several names or interfaces
+        Map<Object, ExtensionBootstrap.Node> nodes = new IdentityHashMap<>();
+        Map<ExtensionBootstrap.Node, Lifecycle> lifecycles = new HashMap<>();
+        Map<Class<?>, Set<ExtensionBootstrap.Node>> byType = new HashMap<>();
+        Map<ExtensionBootstrap.Node, Set<Class<?>>> injectedTypes = new HashMap<>();
+        for (ExtensionFactory<?> factory : factories) {
+            for (String name : factory.getLoadedExtensions()) {
+                Object instance = factory.getLoadedExtension(name);
+                Lifecycle lifecycle = factory.getLifecycle(name);
+                ExtensionBootstrap.Node node = nodes.get(lifecycle != null ? lifecycle : instance);
+                if (node == null) {
+                    node = new ExtensionBootstrap.Node(factory, factory.getType(), name);
+                    nodes.put(lifecycle != null ? lifecycle : instance, node);
+                    if (lifecycle != null) {
+                        lifecycles.put(node, lifecycle);
+                    }
+                }
+                byType.computeIfAbsent(factory.getType(), k -> new LinkedHashSet<>()).add(node);
+                Set<Class<?>> types = injectedTypes.computeIfAbsent(node, k -> new LinkedHashSet<>());
+                for (InjectionPlan.Setter setter : factory.getInjectedSetters(name)) {
+                    types.add(setter.getType());
+                }
+            }
+        }
+        for (Map.Entry<ExtensionBootstrap.Node, Set<Class<?>>> entry : injectedTypes.entrySet()) {
+            ExtensionBootstrap.Node node = entry.getKey();
+            for (Class<?> type : entry.getValue()) {
+                for (ExtensionBootstrap.Node dependency : byType.getOrDefault(type, Collections.emptySet())) {
+                    if (dependency != node && !node.dependencies.contains(dependency)) {
+                        node.dependencies.add(dependency);
+                    }
+                }
+            }
+        }
+
+        Set<ExtensionBootstrap.Node> sorted = new LinkedHashSet<>();
+        Set<ExtensionBootstrap.Node> visiting = new HashSet<>();
+        for (ExtensionBootstrap.Node node : injectedTypes.keySet()) {
+            sort(node, sorted, visiting);
+        }
+        Map<ExtensionBootstrap.Node, Lifecycle> plan = new LinkedHashMap<>();
+        for (ExtensionBootstrap.Node node : sorted) {
+            plan.put(node, lifecycles.get(node));
+        }
+        return plan;
+    }
+
+    /**
+     * depth first topological sort, the edges closing a cycle are removed
+     */
+    private static void sort(ExtensionBootstrap.Node node, Set<ExtensionBootstrap.Node> sorted, Set<ExtensionBootstrap.Node> visiting) {
+        if (sorted.contains(node)) {
+            return;
+        }
+        visiting.add(node);
+        for (Iterator<ExtensionBootstrap.Node> it = node.dependencies.iterator(); it.hasNext(); ) {
+            ExtensionBootstrap.Node dependency = it.next();
+            if (visiting.contains(dependency)) {
+                logger.warn("Circular dependency between the extensions " + node + " and " + dependency + ", their lifecycles are not ordered.");
+                it.remove();
+            } else {
+                sort(dependency, sorted, visiting);
+            }
+        }
+        visiting.remove(node);
+        sorted.add(node);
+    }
+
+    /**
+     * @param reverse true to run the step of an extension after the steps of the extensions depending on it
+     */
+    private static ExtensionBootstrap.Report run(String action, Map<ExtensionBootstrap.Node, Lifecycle> plan, boolean reverse,
+                                                 Consumer<Lifecycle> step, long timeout, TimeUnit unit) {
+        long start = System.nanoTime();
+        long timeoutNanos = unit.toNanos(timeout);
+        ClassLoader classLoader = ClassUtils.getClassLoader(ExtensionFactory.class);
+
+        List<ExtensionBootstrap.Node> order = new ArrayList<>(plan.keySet());
+        Map<ExtensionBootstrap.Node, List<ExtensionBootstrap.Node>> before = new HashMap<>();
+        for (ExtensionBootstrap.Node node : order) {
+            before.put(node, reverse ? new ArrayList<>() : node.dependencies);
+        }
+        if (reverse) {
+            Collections.reverse(order);
+            for (ExtensionBootstrap.Node node : order) {
+                for (ExtensionBootstrap.Node dependency : node.dependencies) {
+                    before.get(dependency).add(node);
+                }
+            }
+        }
+
+        ExecutorService executor = Executors.newCachedThreadPool(THREAD_FACTORY);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(THREAD_FACTORY);
+        try {
+            Map<ExtensionBootstrap.Node, CompletableFuture<Void>> done = new HashMap<>();
+            for (ExtensionBootstrap.Node node : order) {
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                done.put(node, future);
+                Lifecycle lifecycle = plan.get(node);
+                CompletableFuture<?>[] previous = before.get(node).stream().map(done::get).toArray(CompletableFuture<?>[]::new);
+                CompletableFuture.allOf(previous).whenComplete((v, t) -> {
+                    if (lifecycle == null) {
+                        future.complete(null);
+                        return;
+                    }
+                    ScheduledFuture<?> timeoutTask = timer.schedule(() -> {
+                        node.timeout(timeoutNanos);
+                        future.complete(null);
+                    }, timeoutNanos, TimeUnit.NANOSECONDS);
+                    CompletableFuture.runAsync(() -> node.run(start, classLoader, () -> step.accept(lifecycle)), executor)
+                            .whenComplete((v2, t2) -> {
+                                timeoutTask.cancel(false);
+                                future.complete(null);
+                            });
+                });
+            }
+            CompletableFuture.allOf(done.values().toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            // the timed out steps keep running on their daemon threads
+            executor.shutdown();
+            timer.shutdownNow();
+        }
+
+        List<ExtensionBootstrap.Node> managed = new ArrayList<>();
+        for (ExtensionBootstrap.Node node : order) {
+            if (plan.get(node) != null) {
+                managed.add(node);
+            }
+        }
+        ExtensionBootstrap.Report report = new ExtensionBootstrap.Report(action, managed, System.nanoTime() - start);
+        if (logger.isInfoEnabled()) {
+            logger.info(report.toString());
+        }
+        return report;
+    }
+
+    private static ExtensionBootstrap.Report checkStarted(ExtensionBootstrap.Report report) {
+        List<ExtensionBootstrap.Node> failed = report.getFailedNodes();
+        if (!failed.isEmpty()) {
+            IllegalStateException e = new IllegalStateException("Failed to start extensions " + failed);
+            failed.forEach(node -> e.addSuppressed(node.getFailure()));
+            throw e;
+        }
+        return report;
+    }
+
+    private static ExtensionBootstrap.Report logDestroyed(ExtensionBootstrap.Report report) {
+        for (ExtensionBootstrap.Node node : report.getFailedNodes()) {
+            logger.error("Error destroying extension " + node, node.getFailure());
+        }
+        return report;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension;
+
+import org.neuronbit.xpi.common.compiler.support.ClassPools;
+import org.neuronbit.xpi.common.logger.Logger;
+import org.neuronbit.xpi.common.logger.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registry of the extension factories and of the singleton extension instances, and the class loader their
+ * extensions are loaded with.
+ * <p>
+ * {@link ExtensionFactory#getExtensionFactory(Class)} uses the {@link #getDefault() default scope}, which loads the
+ * extensions with the context class loader and lives as long as the application. A plugin gets its own scope for its
+ * class loader, closed when the plugin is undeployed:
+ * <pre>
+ *     try (ExtensionScope scope = new ExtensionScope(pluginClassLoader)) {
+ *         Protocol protocol = scope.getExtensionFactory(Protocol.class).getAdaptiveExtension();
+ *         ...
+ *     }
+ * </pre>
+ * The factories are indexed with a {@link ClassValue} and the instances by extension class with another one, so a
+ * scope never holds a class strongly from outside of it: once closed and no longer referenced, its class loader, the
+ * extension classes and the adaptive classes defined next to their interface, see
+ * {@link org.neuronbit.xpi.common.compiler.support.ClassDefiner}, can be unloaded.
+ * <p>
+ * The extensions created by the factories of a scope, including the adaptive extensions and the injected ones, are
+ * resolved in the same scope: {@link #current()} is the scope of the factory creating an extension while it is
+ * created. The extensions calling {@link ExtensionFactory#getExtensionFactory(Class)} themselves use the default
+ * scope.
+ */
+public class ExtensionScope implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ExtensionScope.class);
+
+    private static final ExtensionScope DEFAULT = new ExtensionScope();
+
+    private static final ThreadLocal<ExtensionScope> CURRENT = new ThreadLocal<>();
+
+    private final ClassValue<ExtensionFactory<?>> factories = new ClassValue<ExtensionFactory<?>>() {
+        @Override
+        protected ExtensionFactory<?> computeValue(Class<?> type) {
+            return createExtensionFactory(type);
+        }
+    };
+
+    /**
+     * the shared instance of every extension class, whatever the interfaces it is the extension of
+     */
+    private final ClassValue<AtomicReference<Object>> instances = new ClassValue<AtomicReference<Object>>() {
+        @Override
+        protected AtomicReference<Object> computeValue(Class<?> type) {
+            return new AtomicReference<>();
+        }
+    };
+
+    /**
+     * the created factories, weakly, they are held by the {@link ClassValue} of their type
+     */
+    private final Set<ExtensionFactory<?>> created = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+
+    private volatile ClassLoader classLoader;
+
+    private volatile boolean closed;
+
+    private ExtensionScope() {
+    }
+
+    /**
+     * @param classLoader class loader of the extension configuration files and of the extension classes
+     */
+    public ExtensionScope(ClassLoader classLoader) {
+        if (classLoader == null) {
+            throw new IllegalArgumentException("Extension scope class loader == null");
+        }
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * @return the scope of {@link ExtensionFactory#getExtensionFactory(Class)}, never closed
+     */
+    public static ExtensionScope getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the scope of the factory creating an extension on the calling thread, the default scope otherwise
+     */
+    public static ExtensionScope current() {
+        ExtensionScope scope = CURRENT.get();
+        return scope != null ? scope : DEFAULT;
+    }
+
+    /**
+     * make this scope the current one of the calling thread, until {@link #exit(ExtensionScope)}
+     *
+     * @return the previous scope, to be given to {@link #exit(ExtensionScope)}
+     */
+    ExtensionScope enter() {
+        ExtensionScope previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    static void exit(ExtensionScope previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> ExtensionFactory<T> getExtensionFactory(Class<T> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Extension type == null");
+        }
+        if (closed) {
+            throw new IllegalStateException("Extension scope " + this + " is closed");
+        }
+        return (ExtensionFactory<T>) factories.get(type);
+    }
+
+    /**
+     * validate the extension type and create its factory, called once per type by {@link #factories}, the factories
+     * created by concurrent calls but not kept are not referenced and dropped from {@link #created}
+     */
+    private ExtensionFactory<?> createExtensionFactory(Class<?> type) {
+        if (!type.isInterface()) {
+            throw new IllegalArgumentException("Extension type (" + type + ") is not an interface!");
+        }
+        if (!type.isAnnotationPresent(SPI.class)) {
+            throw new IllegalArgumentException("Extension type (" + type +
+                                                       ") is not an extension, because it is NOT annotated with @" + SPI.class.getSimpleName() + "!");
+        }
+        ExtensionFactory<?> factory = new ExtensionFactory<>(type, this);
+        created.add(factory);
+        return factory;
+    }
+
+    /**
+     * @return the class loader of the extensions, null for the default scope, which uses the context class loader, or
+     * once closed
+     */
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the created factories
+     */
+    Collection<ExtensionFactory<?>> getFactories() {
+        synchronized (created) {
+            return new ArrayList<>(created);
+        }
+    }
+
+    /**
+     * @return the shared instance of the extension class, or null if not created
+     */
+    Object getInstance(Class<?> clazz) {
+        return instances.get(clazz).get();
+    }
+
+    /**
+     * @return the shared instance of the extension class, the given one unless created concurrently
+     */
+    Object putInstanceIfAbsent(Class<?> clazz, Object instance) {
+        AtomicReference<Object> reference = instances.get(clazz);
+        return reference.compareAndSet(null, instance) ? instance : reference.get();
+    }
+
+    /**
+     * forget the factory of the extension interface and the instances of its extensions
+     */
+    void reset(Class<?> type) {
+        for (ExtensionFactory<?> factory : getFactories()) {
+            if (factory.getType() == type) {
+                forget(factory, true);
+            }
+        }
+        factories.remove(type);
+    }
+
+    /**
+     * forget all the factories, the singleton instances are kept
+     */
+    void resetFactories() {
+        for (ExtensionFactory<?> factory : getFactories()) {
+            forget(factory, false);
+        }
+    }
+
+    private void forget(ExtensionFactory<?> factory, boolean instances) {
+        Map<String, Class<?>> classes = factory.getLoadedExtensionClasses();
+        if (instances) {
+            for (Class<?> clazz : classes.values()) {
+                this.instances.remove(clazz);
+            }
+            classes.clear();
+            factory.clearThreadInstances();
+        }
+        factories.remove(factory.getType());
+        created.remove(factory);
+    }
+
+    /**
+     * Destroy the singleton extensions of this scope, in dependency order as {@link ExtensionLifecycle} does, and
+     * forget the factories, the instances and the class loader. The adaptive and injected extensions created by the
+     * scope must not be used after.
+     *
+     * @throws IllegalStateException for the default scope
+     */
+    @Override
+    public void close() {
+        if (this == DEFAULT) {
+            throw new IllegalStateException("The default extension scope can't be closed");
+        }
+        if (closed) {
+            return;
+        }
+        closed = true;
+        List<ExtensionFactory<?>> factories = new ArrayList<>(getFactories());
+        ExtensionLifecycle.destroyFactories(factories, ExtensionLifecycle.getTimeout(), TimeUnit.MILLISECONDS);
+        for (ExtensionFactory<?> factory : factories) {
+            forget(factory, true);
+        }
+        ClassLoader loader = classLoader;
+        classLoader = null;
+        ClassPools.remove(loader);
+        if (logger.isInfoEnabled()) {
+            logger.info("Closed extension scope of " + loader + " with " + factories.size() + " extension factories");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this == DEFAULT ? "ExtensionScope[default]" : "ExtensionScope[" + classLoader + "]";
+    }
+}
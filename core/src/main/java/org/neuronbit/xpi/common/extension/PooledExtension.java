@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension;
+
+import org.neuronbit.xpi.common.extension.support.InstancePool;
+
+/**
+ * An extension instance of the {@link Scope#POOLED} scope borrowed with
+ * {@link ExtensionFactory#borrowExtension(String)}, returned to its pool when closed.
+ * <pre>
+ *     try (PooledExtension&lt;Codec&gt; codec = factory.borrowExtension("json")) {
+ *         codec.get().encode(message);
+ *     }
+ * </pre>
+ * Not thread safe, the instance must not be used once returned.
+ */
+public final class PooledExtension<T> implements AutoCloseable {
+
+    private final InstancePool<T> pool;
+
+    private T instance;
+
+    PooledExtension(InstancePool<T> pool, T instance) {
+        this.pool = pool;
+        this.instance = instance;
+    }
+
+    /**
+     * @return the borrowed instance
+     * @throws IllegalStateException if already returned
+     */
+    public T get() {
+        if (instance == null) {
+            throw new IllegalStateException("The pooled extension is already returned");
+        }
+        return instance;
+    }
+
+    /**
+     * return the instance to its pool, ignored if already returned
+     */
+    @Override
+    public void close() {
+        T returned = instance;
+        if (returned != null) {
+            instance = null;
+            pool.release(returned);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Scope of the instances of an extension, on the extension class or on the extension interface for all of its
+ * extensions. The extensions without scope are singletons.
+ * <p>
+ * Every instance of a scope is created as a singleton is: injected, wrapped, and initialized if it is a
+ * {@link org.neuronbit.xpi.common.context.Lifecycle}. Only the singletons are destroyed by
+ * {@link ExtensionFactory#destroyAll()}.
+ * <pre>
+ *     &#64;Scope(Scope.THREAD)
+ *     public class JsonCodec implements Codec {
+ *         private final StringBuilder buffer = new StringBuilder();
+ *         ...
+ *     }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+public @interface Scope {
+
+    /**
+     * one instance, the default
+     */
+    String SINGLETON = "singleton";
+
+    /**
+     * a new instance for every {@link ExtensionFactory#getExtension(String)}
+     */
+    String PROTOTYPE = "prototype";
+
+    /**
+     * one instance per thread calling {@link ExtensionFactory#getExtension(String)}
+     */
+    String THREAD = "thread";
+
+    /**
+     * at most {@link #poolSize()} instances, borrowed with {@link ExtensionFactory#borrowExtension(String)} and
+     * returned by {@link PooledExtension#close()}
+     */
+    String POOLED = "pooled";
+
+    String value() default SINGLETON;
+
+    /**
+     * maximum number of instances of the {@link #POOLED} scope, the borrowers wait when they are all borrowed
+     */
+    int poolSize() default 8;
+}
@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.index;
+
+import org.neuronbit.xpi.common.logger.Logger;
+import org.neuronbit.xpi.common.logger.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+/**
+ * Index of the files found directly under the configuration directories of the
+ * {@link org.neuronbit.xpi.common.extension.ExtensionSource extension sources}, built by walking the class path
+ * once per class loader instead of once per extension interface and directory.
+ * <p>
+ * The class path roots are the urls of the {@link URLClassLoader}s of the class loader hierarchy, and the
+ * <code>java.class.path</code> entries for the system class loader, walked parent first in class path order, as
+ * {@link ClassLoader#getResources(String)} does. The directory roots are listed, the jar roots are read from their
+ * zip central directory, followed by the jars of their manifest class path.
+ * <p>
+ * When the class path roots of a class loader of the hierarchy are not known, or a root is neither a directory nor
+ * a local jar, the index is disabled for the class loader and the resources have to be looked up from the class
+ * loader. Set the system property
+ * {@link #IGNORE_RESOURCE_INDEX_PROPERTY} to <code>true</code> to disable the index.
+ */
+public class ClasspathResourceIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ClasspathResourceIndex.class);
+
+    public static final String IGNORE_RESOURCE_INDEX_PROPERTY = "xpi.resource.index.ignore";
+
+    private static final String CLASS_PATH_PROPERTY = "java.class.path";
+
+    private static final String JAR_SEPARATOR = "!/";
+
+    private static final ClasspathResourceIndex DISABLED = new ClasspathResourceIndex(Collections.emptySet(), Collections.emptyMap());
+
+    private static final Map<ClassLoader, ClasspathResourceIndex> INDEXES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Set<String> directories;
+
+    /**
+     * directory -> file name -> resources
+     */
+    private final Map<String, Map<String, List<URL>>> resources;
+
+    ClasspathResourceIndex(Set<String> directories, Map<String, Map<String, List<URL>>> resources) {
+        this.directories = directories;
+        this.resources = resources;
+    }
+
+    /**
+     * Get the index of the given directories for the given class loader. The class path is walked again only when
+     * a directory is not indexed yet, the extension sources have changed for instance.
+     *
+     * @param classLoader class loader, <code>null</code> means the system class loader
+     * @param directories the directories to index, ending with '/'
+     * @return non-null, disabled if the class path can't be indexed or the index is ignored
+     */
+    public static ClasspathResourceIndex getIndex(ClassLoader classLoader, Collection<String> directories) {
+        if (Boolean.getBoolean(IGNORE_RESOURCE_INDEX_PROPERTY)) {
+            return DISABLED;
+        }
+        if (classLoader == null) {
+            classLoader = ClassLoader.getSystemClassLoader();
+        }
+        ClasspathResourceIndex index = INDEXES.get(classLoader);
+        if (index == null || !index.covers(directories)) {
+            synchronized (INDEXES) {
+                index = INDEXES.get(classLoader);
+                if (index == null || !index.covers(directories)) {
+                    Set<String> all = new HashSet<>(directories);
+                    if (index != null) {
+                        all.addAll(index.directories);
+                    }
+                    index = load(classLoader, all);
+                    INDEXES.put(classLoader, index);
+                }
+            }
+        }
+        return index;
+    }
+
+    private boolean covers(Collection<String> directories) {
+        return this == DISABLED || this.directories.containsAll(directories);
+    }
+
+    /**
+     * @return the resources of the given file in the given directory, in class path order, or <code>null</code> if
+     * the directory is not indexed and the class loader has to be asked
+     */
+    public List<URL> getResources(String directory, String fileName) {
+        Map<String, List<URL>> files = resources.get(directory);
+        if (files == null) {
+            return null;
+        }
+        List<URL> urls = files.get(fileName);
+        return urls == null ? Collections.emptyList() : urls;
+    }
+
+    private static ClasspathResourceIndex load(ClassLoader classLoader, Set<String> directories) {
+        long start = System.nanoTime();
+        try {
+            List<URL> roots = new ArrayList<>();
+            if (!addRoots(classLoader, roots)) {
+                return disable(classLoader);
+            }
+            Map<String, Map<String, List<URL>>> resources = new HashMap<>();
+            for (String directory : directories) {
+                resources.put(directory, new HashMap<>());
+            }
+            Set<String> visited = new HashSet<>();
+            int jars = 0;
+            for (int i = 0; i < roots.size(); i++) {
+                URL root = roots.get(i);
+                if (!"file".equals(root.getProtocol())) {
+                    return disable(root);
+                }
+                File file = new File(root.toURI());
+                if (!visited.add(file.getPath())) {
+                    continue;
+                }
+                if (file.isDirectory()) {
+                    readDirectory(file, resources);
+                } else if (file.isFile()) {
+                    jars++;
+                    // the jars of the manifest class path come right after the jar, as with the class loader
+                    roots.addAll(i + 1, readJar(file, root, resources));
+                }
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Indexed the extension directories " + directories + " of " + jars + " jars in "
+                                     + (System.nanoTime() - start) / 1000000 + "ms");
+            }
+            return new ClasspathResourceIndex(directories, resources);
+        } catch (Throwable t) {
+            logger.warn("Exception occurred when indexing the extension directories " + directories + ", the index is disabled.", t);
+            return DISABLED;
+        }
+    }
+
+    private static ClasspathResourceIndex disable(Object root) {
+        logger.info("Can't index the class path root(s) of " + root + ", the extension resources are looked up from the class loader.");
+        return DISABLED;
+    }
+
+    /**
+     * add the class path roots of the given class loader in the order of {@link ClassLoader#getResources(String)},
+     * the roots of its parents first
+     *
+     * @return false if the class path roots of a class loader of the hierarchy are not known
+     */
+    private static boolean addRoots(ClassLoader classLoader, List<URL> roots) throws IOException {
+        if (classLoader == null) {
+            // the bootstrap class loader, no extension
+            return true;
+        }
+        ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+        if (!addRoots(classLoader.getParent(), roots)) {
+            return false;
+        }
+        if (classLoader instanceof URLClassLoader) {
+            roots.addAll(Arrays.asList(((URLClassLoader) classLoader).getURLs()));
+            return true;
+        }
+        if (classLoader == systemClassLoader) {
+            for (String path : System.getProperty(CLASS_PATH_PROPERTY, "").split(File.pathSeparator)) {
+                if (!path.isEmpty()) {
+                    roots.add(new File(path).toURI().toURL());
+                }
+            }
+            return true;
+        }
+        // the platform class loader, which has no class path
+        return classLoader == systemClassLoader.getParent();
+    }
+
+    private static void readDirectory(File root, Map<String, Map<String, List<URL>>> resources) throws IOException {
+        for (Map.Entry<String, Map<String, List<URL>>> directory : resources.entrySet()) {
+            File[] children = new File(root, directory.getKey()).listFiles(File::isFile);
+            if (children != null) {
+                for (File child : children) {
+                    directory.getValue().computeIfAbsent(child.getName(), k -> new ArrayList<>(1)).add(child.toURI().toURL());
+                }
+            }
+        }
+    }
+
+    /**
+     * read the zip central directory of the jar, only the manifest is inflated
+     *
+     * @return the jars of the manifest class path
+     */
+    private static List<URL> readJar(File file, URL root, Map<String, Map<String, List<URL>>> resources) throws IOException {
+        try (JarFile jar = new JarFile(file)) {
+            Enumeration<? extends ZipEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                int slash = name.lastIndexOf('/');
+                if (entry.isDirectory() || slash < 0) {
+                    continue;
+                }
+                Map<String, List<URL>> files = resources.get(name.substring(0, slash + 1));
+                if (files != null) {
+                    URL url = new URL("jar:" + root.toExternalForm() + JAR_SEPARATOR + name);
+                    files.computeIfAbsent(name.substring(slash + 1), k -> new ArrayList<>(1)).add(url);
+                }
+            }
+            Manifest manifest = jar.getManifest();
+            String classPath = manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+            if (classPath == null) {
+                return Collections.emptyList();
+            }
+            List<URL> urls = new ArrayList<>();
+            for (String path : classPath.trim().split("\\s+")) {
+                if (!path.isEmpty()) {
+                    urls.add(new URL(root, path));
+                }
+            }
+            return urls;
+        }
+    }
+}
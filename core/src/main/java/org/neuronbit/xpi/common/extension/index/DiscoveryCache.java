@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.index;
+
+import org.neuronbit.xpi.common.logger.Logger;
+import org.neuronbit.xpi.common.logger.LoggerFactory;
+import org.neuronbit.xpi.common.utils.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of the extension discovery, shared by the runs of the same application.
+ * <p>
+ * When the system property {@link #CACHE_DIRECTORY_PROPERTY} is set, the extensions found by scanning the
+ * configuration files are written there in the {@link ExtensionIndex} format, one file per extension interface, and
+ * the generated adaptive classes are written as class files. The next runs load the extensions of the cached
+ * interfaces as if they were indexed at build time, and define the cached adaptive classes without generating them.
+ * <p>
+ * The cache of a class loader is stored under a fingerprint of its class path: the path, size and modification time
+ * of every class path entry, every file of the class path directories, the extension directories and the java
+ * version. Any change to the class path leads to a new, empty, cache. The class loaders whose class path is not
+ * known, neither a {@link URLClassLoader} nor the system class loader, are not cached.
+ */
+public class DiscoveryCache {
+    private static final Logger logger = LoggerFactory.getLogger(DiscoveryCache.class);
+
+    public static final String CACHE_DIRECTORY_PROPERTY = "xpi.cache.dir";
+
+    private static final String VERSION = "1";
+
+    private static final String INDEX_DIRECTORY = "index";
+
+    private static final String ADAPTIVE_DIRECTORY = "adaptive";
+
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    private static final DiscoveryCache DISABLED = new DiscoveryCache(null, Collections.emptySet());
+
+    private static final Map<ClassLoader, DiscoveryCache> CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Path directory;
+
+    private final Collection<String> directories;
+
+    DiscoveryCache(Path directory, Collection<String> directories) {
+        this.directory = directory;
+        this.directories = directories;
+    }
+
+    /**
+     * @param classLoader class loader, <code>null</code> means the system class loader
+     * @param directories the directories of the extension sources, part of the fingerprint
+     * @return non-null, disabled if {@link #CACHE_DIRECTORY_PROPERTY} is not set or the class path is not known
+     */
+    public static DiscoveryCache getCache(ClassLoader classLoader, Collection<String> directories) {
+        String root = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+        if (StringUtils.isEmpty(root)) {
+            return DISABLED;
+        }
+        if (classLoader == null) {
+            classLoader = ClassLoader.getSystemClassLoader();
+        }
+        DiscoveryCache cache = CACHES.get(classLoader);
+        if (cache == null || !cache.matches(root, directories)) {
+            synchronized (CACHES) {
+                cache = CACHES.get(classLoader);
+                if (cache == null || !cache.matches(root, directories)) {
+                    cache = create(classLoader, Paths.get(root), new TreeSet<>(directories));
+                    CACHES.put(classLoader, cache);
+                }
+            }
+        }
+        return cache;
+    }
+
+    private boolean matches(String root, Collection<String> directories) {
+        return (directory == null || directory.getParent().equals(Paths.get(root))) && this.directories.containsAll(directories);
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * @param type name of the extension interface
+     * @return the cached extensions of the interface, empty if the interface is not cached
+     */
+    public List<ExtensionIndexEntry> getEntries(String type) {
+        if (directory == null) {
+            return Collections.emptyList();
+        }
+        Path file = directory.resolve(INDEX_DIRECTORY).resolve(type);
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyList();
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            URL source = file.toUri().toURL();
+            List<ExtensionIndexEntry> entries = ExtensionIndex.read(reader);
+            for (ExtensionIndexEntry entry : entries) {
+                entry.setSource(source);
+            }
+            return entries;
+        } catch (Throwable t) {
+            logger.warn("Exception occurred when reading the cached extensions " + file + ", the configuration files are scanned.", t);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * cache the extensions of the given interface, found by scanning the configuration files
+     */
+    public void putEntries(String type, Collection<ExtensionIndexEntry> entries) {
+        if (directory == null) {
+            return;
+        }
+        Path file = directory.resolve(INDEX_DIRECTORY).resolve(type);
+        try {
+            Path temp = createTempFile(file);
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                ExtensionIndex.write(writer, entries);
+            }
+            moveAtomically(temp, file);
+        } catch (Throwable t) {
+            logger.warn("Exception occurred when caching the extensions of " + type + " to " + file + ".", t);
+        }
+    }
+
+    /**
+     * @return the cached bytecode of the adaptive class, or null if not cached
+     */
+    public byte[] getAdaptiveClass(String className) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = directory.resolve(ADAPTIVE_DIRECTORY).resolve(className + CLASS_FILE_SUFFIX);
+        try {
+            return Files.isRegularFile(file) ? Files.readAllBytes(file) : null;
+        } catch (Throwable t) {
+            logger.warn("Exception occurred when reading the cached adaptive class " + file + ", the class is generated.", t);
+            return null;
+        }
+    }
+
+    public void putAdaptiveClass(String className, byte[] bytecode) {
+        if (directory == null) {
+            return;
+        }
+        Path file = directory.resolve(ADAPTIVE_DIRECTORY).resolve(className + CLASS_FILE_SUFFIX);
+        try {
+            Path temp = createTempFile(file);
+            Files.write(temp, bytecode);
+            moveAtomically(temp, file);
+        } catch (Throwable t) {
+            logger.warn("Exception occurred when caching the adaptive class " + className + " to " + file + ".", t);
+        }
+    }
+
+    private static Path createTempFile(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    }
+
+    /**
+     * several processes may write the same file, the readers see either no file or a complete one
+     */
+    private static void moveAtomically(Path temp, Path file) throws IOException {
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static DiscoveryCache create(ClassLoader classLoader, Path root, Collection<String> directories) {
+        try {
+            List<File> classPath = getClassPath(classLoader);
+            if (classPath == null) {
+                logger.info("The class path of " + classLoader + " is unknown, the extension discovery is not cached.");
+                return new DiscoveryCache(null, directories);
+            }
+            long start = System.nanoTime();
+            String fingerprint = fingerprint(classPath, directories);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Fingerprint " + fingerprint + " of the class path of " + classLoader + " computed in "
+                                     + (System.nanoTime() - start) / 1000000 + "ms");
+            }
+            return new DiscoveryCache(root.resolve(fingerprint), directories);
+        } catch (Throwable t) {
+            logger.warn("Exception occurred when computing the class path fingerprint of " + classLoader + ", the extension discovery is not cached.", t);
+            return new DiscoveryCache(null, directories);
+        }
+    }
+
+    /**
+     * @return the class path entries of the class loader and its parents, or null if unknown
+     */
+    static List<File> getClassPath(ClassLoader classLoader) throws Exception {
+        ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+        ClassLoader platformClassLoader = systemClassLoader.getParent();
+        List<File> classPath = new ArrayList<>();
+        for (ClassLoader loader = classLoader; loader != null && loader != platformClassLoader; loader = loader.getParent()) {
+            if (loader instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) loader).getURLs()) {
+                    if (!"file".equals(url.getProtocol())) {
+                        return null;
+                    }
+                    classPath.add(new File(url.toURI()));
+                }
+            } else if (loader == systemClassLoader) {
+                for (String path : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+                    if (!path.isEmpty()) {
+                        classPath.add(new File(path));
+                    }
+                }
+            } else {
+                return null;
+            }
+        }
+        return classPath;
+    }
+
+    static String fingerprint(List<File> classPath, Collection<String> directories) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        update(digest, VERSION);
+        update(digest, System.getProperty("java.version"));
+        for (String directory : directories) {
+            update(digest, directory);
+        }
+        for (File file : classPath) {
+            File absolute = file.getAbsoluteFile();
+            update(digest, absolute.getPath());
+            if (absolute.isDirectory()) {
+                Path base = absolute.toPath();
+                try (Stream<Path> files = Files.walk(base)) {
+                    files.filter(Files::isRegularFile).sorted().forEach(path -> {
+                        File f = path.toFile();
+                        update(digest, base.relativize(path).toString() + ':' + f.length() + ':' + f.lastModified());
+                    });
+                }
+            } else {
+                update(digest, absolute.length() + ":" + absolute.lastModified());
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        byte[] bytes = digest.digest();
+        for (int i = 0; i < 16; i++) {
+            hex.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16)).append(Character.forDigit(bytes[i] & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
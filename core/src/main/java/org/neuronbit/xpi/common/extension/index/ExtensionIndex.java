@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.index;
+
+import org.neuronbit.xpi.common.extension.Activate;
+import org.neuronbit.xpi.common.logger.Logger;
+import org.neuronbit.xpi.common.logger.LoggerFactory;
+import org.neuronbit.xpi.common.utils.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Extension index generated at build time by the <code>xpi-processor</code> annotation processor.
+ * <p>
+ * Every jar built with the processor carries a {@link #INDEX_LOCATION} file which lists, per extension interface,
+ * the extension names, the extension classes, whether a class is an adaptive class or a wrapper, and the
+ * {@link Activate} metadata. When an extension interface is found in the index, the configuration files do not
+ * have to be scanned and parsed, and the classes do not have to be inspected reflectively.
+ * <p>
+ * File format, one entry per line, fields separated by <code>TAB</code>, array elements separated by <code>|</code>:
+ * <pre>
+ *     directory  type  name  class  kind  [group  value  before  after  order]
+ * </pre>
+ * The trailing five fields are present only when the extension class is annotated with {@link Activate}.
+ * <p>
+ * An index file covers the interfaces it lists for the class path root it is found in only: the configuration
+ * files of an indexed interface found in other roots, the jars not built with the processor for instance, are still
+ * scanned, see {@link #getEntries(String, URL, String)}. Set the system property {@link #IGNORE_INDEX_PROPERTY} to
+ * <code>true</code> to disable the index and always scan the configuration files.
+ */
+public class ExtensionIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ExtensionIndex.class);
+
+    public static final String INDEX_LOCATION = "META-INF/xpi.index";
+
+    public static final String IGNORE_INDEX_PROPERTY = "xpi.index.ignore";
+
+    private static final String HEADER = "# xpi extension index, generated, do not edit";
+
+    private static final char FIELD_SEPARATOR = '\t';
+
+    private static final char ELEMENT_SEPARATOR = '|';
+
+    private static final ExtensionIndex EMPTY = new ExtensionIndex(Collections.emptyMap());
+
+    private static final Map<ClassLoader, ExtensionIndex> INDEXES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, List<ExtensionIndexEntry>> entries;
+
+    /**
+     * interface -> class path root of the index file -> entries
+     */
+    private final Map<String, Map<String, List<ExtensionIndexEntry>>> roots = new HashMap<>();
+
+    ExtensionIndex(Map<String, List<ExtensionIndexEntry>> entries) {
+        this.entries = entries;
+        entries.forEach((type, list) -> {
+            Map<String, List<ExtensionIndexEntry>> byRoot = new LinkedHashMap<>();
+            for (ExtensionIndexEntry entry : list) {
+                String root = entry.getSource() == null ? "" : getRoot(entry.getSource(), INDEX_LOCATION);
+                byRoot.computeIfAbsent(root, k -> new ArrayList<>()).add(entry);
+            }
+            roots.put(type, byRoot);
+        });
+    }
+
+    /**
+     * Get the index of all the {@link #INDEX_LOCATION} files visible to the given class loader, the files are
+     * read only once per class loader.
+     *
+     * @param classLoader class loader, <code>null</code> means the system class loader
+     * @return non-null, empty if no index is found or the index is ignored
+     */
+    public static ExtensionIndex getIndex(ClassLoader classLoader) {
+        if (Boolean.getBoolean(IGNORE_INDEX_PROPERTY)) {
+            return EMPTY;
+        }
+        if (classLoader == null) {
+            classLoader = ClassLoader.getSystemClassLoader();
+        }
+        ExtensionIndex index = INDEXES.get(classLoader);
+        if (index == null) {
+            synchronized (INDEXES) {
+                index = INDEXES.get(classLoader);
+                if (index == null) {
+                    index = load(classLoader);
+                    INDEXES.put(classLoader, index);
+                }
+            }
+        }
+        return index;
+    }
+
+    private static ExtensionIndex load(ClassLoader classLoader) {
+        Map<String, List<ExtensionIndexEntry>> entries = new HashMap<>();
+        try {
+            Enumeration<URL> urls = classLoader.getResources(INDEX_LOCATION);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    for (ExtensionIndexEntry entry : read(reader)) {
+                        entry.setSource(url);
+                        entries.computeIfAbsent(entry.getType(), k -> new ArrayList<>()).add(entry);
+                    }
+                } catch (Throwable t) {
+                    logger.error("Exception occurred when loading extension index " + url + ", the index is ignored.", t);
+                }
+            }
+        } catch (Throwable t) {
+            logger.error("Exception occurred when loading extension indexes (" + INDEX_LOCATION + ").", t);
+            return EMPTY;
+        }
+        return entries.isEmpty() ? EMPTY : new ExtensionIndex(entries);
+    }
+
+    /**
+     * @param type name of the extension interface
+     * @return the entries of the given interface in configuration file order, empty if the interface is not indexed
+     */
+    public List<ExtensionIndexEntry> getEntries(String type) {
+        List<ExtensionIndexEntry> list = entries.get(type);
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    /**
+     * Get the entries of the given interface indexed in the class path root of the given configuration file.
+     *
+     * @param type     name of the extension interface
+     * @param resource configuration file of the interface
+     * @param path     path of the configuration file in its class path root, e.g. <code>META-INF/xpi/a.Type</code>
+     * @return the entries of the root, or <code>null</code> if the root has no index for the interface and the
+     * configuration file has to be scanned
+     */
+    public List<ExtensionIndexEntry> getEntries(String type, URL resource, String path) {
+        Map<String, List<ExtensionIndexEntry>> byRoot = roots.get(type);
+        return byRoot == null ? null : byRoot.get(getRoot(resource, path));
+    }
+
+    /**
+     * @return the entries of the given interface indexed in the class path roots other than the given ones
+     */
+    public List<ExtensionIndexEntry> getEntriesExcept(String type, Set<String> excludedRoots) {
+        Map<String, List<ExtensionIndexEntry>> byRoot = roots.get(type);
+        if (byRoot == null) {
+            return Collections.emptyList();
+        }
+        List<ExtensionIndexEntry> result = new ArrayList<>();
+        byRoot.forEach((root, list) -> {
+            if (!excludedRoots.contains(root)) {
+                result.addAll(list);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return the class path root the given resource is found in, its url without the given path
+     */
+    public static String getRoot(URL resource, String path) {
+        String url = resource.toExternalForm();
+        return url.endsWith(path) ? url.substring(0, url.length() - path.length()) : url;
+    }
+
+    /**
+     * @return the names of the indexed extension interfaces
+     */
+    public Set<String> getTypes() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Read the entries of an index file.
+     *
+     * @throws IllegalStateException if the content is malformed
+     */
+    public static List<ExtensionIndexEntry> read(BufferedReader reader) throws IOException {
+        List<ExtensionIndexEntry> result = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            String[] fields = StringUtils.split(line, FIELD_SEPARATOR);
+            if (fields.length != 5 && fields.length != 10) {
+                throw new IllegalStateException("Malformed extension index line: " + line);
+            }
+            Activate activate = null;
+            if (fields.length == 10) {
+                activate = new IndexedActivate(splitElements(fields[5]), splitElements(fields[6]),
+                        splitElements(fields[7]), splitElements(fields[8]), Integer.parseInt(fields[9]));
+            }
+            result.add(new ExtensionIndexEntry(fields[0], fields[1], fields[2].isEmpty() ? null : fields[2], fields[3],
+                    ExtensionIndexEntry.Kind.valueOf(fields[4].toUpperCase(Locale.ROOT)), activate));
+        }
+        return result;
+    }
+
+    /**
+     * Write the given entries in the index file format.
+     */
+    public static void write(Writer writer, Collection<ExtensionIndexEntry> entries) throws IOException {
+        writer.write(HEADER);
+        writer.write('\n');
+        for (ExtensionIndexEntry entry : entries) {
+            StringBuilder line = new StringBuilder(128);
+            line.append(entry.getDirectory()).append(FIELD_SEPARATOR)
+                    .append(entry.getType()).append(FIELD_SEPARATOR)
+                    .append(entry.getName() == null ? "" : entry.getName()).append(FIELD_SEPARATOR)
+                    .append(entry.getClassName()).append(FIELD_SEPARATOR)
+                    .append(entry.getKind().name().toLowerCase(Locale.ROOT));
+            Activate activate = entry.getActivate();
+            if (activate != null) {
+                line.append(FIELD_SEPARATOR).append(joinElements(activate.group()))
+                        .append(FIELD_SEPARATOR).append(joinElements(activate.value()))
+                        .append(FIELD_SEPARATOR).append(joinElements(activate.before()))
+                        .append(FIELD_SEPARATOR).append(joinElements(activate.after()))
+                        .append(FIELD_SEPARATOR).append(activate.order());
+            }
+            writer.write(line.append('\n').toString());
+        }
+    }
+
+    private static String[] splitElements(String field) {
+        return field.isEmpty() ? StringUtils.EMPTY_STRING_ARRAY : StringUtils.split(field, ELEMENT_SEPARATOR);
+    }
+
+    private static String joinElements(String[] elements) {
+        StringBuilder buf = new StringBuilder();
+        for (String element : elements) {
+            if (element.indexOf(ELEMENT_SEPARATOR) >= 0 || element.indexOf(FIELD_SEPARATOR) >= 0) {
+                throw new IllegalArgumentException("Unsupported character in activate value: " + element);
+            }
+            if (buf.length() > 0) {
+                buf.append(ELEMENT_SEPARATOR);
+            }
+            buf.append(element);
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.index;
+
+import org.neuronbit.xpi.common.extension.Activate;
+import org.neuronbit.xpi.common.extension.ExtensionSource;
+
+import java.net.URL;
+
+/**
+ * One line of an extension index, i.e. one line of an extension configuration file resolved at build time.
+ * <p>
+ * The entry remembers the {@link ExtensionSource#directory() directory} the configuration file was found in, so
+ * that the runtime can still apply the priority and overriding rules of the matching {@link ExtensionSource}.
+ */
+public class ExtensionIndexEntry {
+
+    /**
+     * What the extension class turned out to be when it was inspected at build time
+     */
+    public enum Kind {
+        EXTENSION, ADAPTIVE, WRAPPER
+    }
+
+    private final String directory;
+
+    private final String type;
+
+    private final String name;
+
+    private final String className;
+
+    private final Kind kind;
+
+    private final Activate activate;
+
+    private URL source;
+
+    public ExtensionIndexEntry(String directory, String type, String name, String className, Kind kind, Activate activate) {
+        this.directory = directory;
+        this.type = type;
+        this.name = name;
+        this.className = className;
+        this.kind = kind;
+        this.activate = activate;
+    }
+
+    /**
+     * @return the {@link ExtensionSource#directory() directory} of the configuration file
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the name of the extension interface
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the extension name(s) as written in the configuration file, <code>null</code> if absent
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the {@link Activate} metadata of the extension class, <code>null</code> if not annotated
+     */
+    public Activate getActivate() {
+        return activate;
+    }
+
+    /**
+     * @return the index file this entry was read from, <code>null</code> for entries not read from a file
+     */
+    public URL getSource() {
+        return source;
+    }
+
+    void setSource(URL source) {
+        this.source = source;
+    }
+
+    /**
+     * @return the configuration line this entry was built from, used in error messages
+     */
+    public String toLine() {
+        return name == null ? className : name + "=" + className;
+    }
+
+    @Override
+    public String toString() {
+        return "ExtensionIndexEntry[" + directory + type + ": " + toLine() + " (" + kind + ")]";
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.index;
+
+import org.neuronbit.xpi.common.extension.Activate;
+
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+
+/**
+ * {@link Activate} metadata read from an extension index, so that the annotation does not have to be looked up
+ * reflectively on the extension class.
+ */
+@SuppressWarnings("ClassExplicitlyAnnotation")
+public class IndexedActivate implements Activate {
+
+    private final String[] group;
+
+    private final String[] value;
+
+    private final String[] before;
+
+    private final String[] after;
+
+    private final int order;
+
+    public IndexedActivate(String[] group, String[] value, String[] before, String[] after, int order) {
+        this.group = group;
+        this.value = value;
+        this.before = before;
+        this.after = after;
+        this.order = order;
+    }
+
+    @Override
+    public String[] group() {
+        return group.clone();
+    }
+
+    @Override
+    public String[] value() {
+        return value.clone();
+    }
+
+    @Override
+    public String[] before() {
+        return before.clone();
+    }
+
+    @Override
+    public String[] after() {
+        return after.clone();
+    }
+
+    @Override
+    public int order() {
+        return order;
+    }
+
+    @Override
+    public Class<? extends Annotation> annotationType() {
+        return Activate.class;
+    }
+
+    @Override
+    public String toString() {
+        return "@" + Activate.class.getName() + "(group=" + Arrays.toString(group) + ", value=" + Arrays.toString(value)
+                       + ", before=" + Arrays.toString(before) + ", after=" + Arrays.toString(after) + ", order=" + order + ")";
+    }
+}
@@ -18,6 +18,7 @@ package org.neuronbit.xpi.common.extension.inject;
 
 import org.neuronbit.xpi.common.extension.Adaptive;
 import org.neuronbit.xpi.common.extension.ExtensionFactory;
+import org.neuronbit.xpi.common.extension.ExtensionScope;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -32,7 +33,7 @@ public class AdaptiveInjectProvider implements InjectProvider {
     private final List<InjectProvider> factories;
 
     public AdaptiveInjectProvider() {
-        ExtensionFactory<InjectProvider> loader = ExtensionFactory.getExtensionFactory(InjectProvider.class);
+        ExtensionFactory<InjectProvider> loader = ExtensionScope.current().getExtensionFactory(InjectProvider.class);
         List<InjectProvider> list = new ArrayList<>();
         for (String name : loader.getSupportedExtensions()) {
             list.add(loader.getExtension(name));
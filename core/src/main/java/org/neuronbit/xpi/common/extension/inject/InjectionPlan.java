@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.inject;
+
+import org.neuronbit.xpi.common.logger.Logger;
+import org.neuronbit.xpi.common.logger.LoggerFactory;
+import org.neuronbit.xpi.common.utils.ReflectUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The setters of a class which are injected with extensions, resolved once per class.
+ * <p>
+ * A setter is public, named <code>setXxx</code>, takes a single non primitive parameter and is not annotated with
+ * {@link DisableInject}.
+ */
+public final class InjectionPlan {
+    private static final Logger logger = LoggerFactory.getLogger(InjectionPlan.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<InjectionPlan> PLANS = new ClassValue<InjectionPlan>() {
+        @Override
+        protected InjectionPlan computeValue(Class<?> type) {
+            return new InjectionPlan(type);
+        }
+    };
+
+    private final Setter[] setters;
+
+    private InjectionPlan(Class<?> type) {
+        List<Setter> setters = new ArrayList<>();
+        for (Method method : type.getMethods()) {
+            if (!isSetter(method) || method.getAnnotation(DisableInject.class) != null) {
+                continue;
+            }
+            Class<?> pt = method.getParameterTypes()[0];
+            if (ReflectUtils.isPrimitives(pt)) {
+                continue;
+            }
+            try {
+                MethodHandle handle = MethodHandles.lookup().unreflect(method).asType(SETTER_TYPE);
+                setters.add(new Setter(method.getName(), pt, getSetterProperty(method), handle));
+            } catch (IllegalAccessException e) {
+                logger.warn("Setter " + method.getName() + " of " + type.getName() + " is not accessible, it won't be injected: " + e.getMessage());
+            }
+        }
+        this.setters = setters.toArray(new Setter[0]);
+    }
+
+    public static InjectionPlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    /**
+     * @return the setters, must not be modified
+     */
+    public Setter[] getSetters() {
+        return setters;
+    }
+
+    /**
+     * return true if and only if:
+     * <p>
+     * 1, public
+     * <p>
+     * 2, name starts with "set"
+     * <p>
+     * 3, only has one parameter
+     */
+    private static boolean isSetter(Method method) {
+        return method.getName().startsWith("set")
+                       && method.getParameterTypes().length == 1
+                       && Modifier.isPublic(method.getModifiers());
+    }
+
+    /**
+     * get properties name for setter, for instance: setVersion, return "version"
+     * <p>
+     * return "", if setter name with length less than 3
+     */
+    private static String getSetterProperty(Method method) {
+        return method.getName().length() > 3 ? method.getName().substring(3, 4).toLowerCase() + method.getName().substring(4) : "";
+    }
+
+    public static final class Setter {
+
+        private final String name;
+
+        private final Class<?> type;
+
+        private final String property;
+
+        private final MethodHandle handle;
+
+        private Setter(String name, Class<?> type, String property, MethodHandle handle) {
+            this.name = name;
+            this.type = type;
+            this.property = property;
+            this.handle = handle;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+
+        public void invoke(Object instance, Object value) throws Throwable {
+            handle.invokeExact(instance, value);
+        }
+    }
+}
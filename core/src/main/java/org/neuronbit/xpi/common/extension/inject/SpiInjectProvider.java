@@ -17,6 +17,7 @@
 package org.neuronbit.xpi.common.extension.inject;
 
 import org.neuronbit.xpi.common.extension.ExtensionFactory;
+import org.neuronbit.xpi.common.extension.ExtensionScope;
 import org.neuronbit.xpi.common.extension.SPI;
 
 /**
@@ -24,10 +25,15 @@ import org.neuronbit.xpi.common.extension.SPI;
  */
 public class SpiInjectProvider implements InjectProvider {
 
+    /**
+     * scope of the factories of the injected extensions, the one of the extension factory creating this provider
+     */
+    private final ExtensionScope scope = ExtensionScope.current();
+
     @Override
     public <T> T getInstance(Class<T> type, String name) {
         if (type.isInterface() && type.isAnnotationPresent(SPI.class)) {
-            ExtensionFactory<T> loader = ExtensionFactory.getExtensionFactory(type);
+            ExtensionFactory<T> loader = scope.getExtensionFactory(type);
             if (!loader.getSupportedExtensions().isEmpty()) {
                 return loader.getAdaptiveExtension();
             }
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.support;
+
+import org.neuronbit.xpi.common.extension.Activate;
+import org.neuronbit.xpi.common.extension.ActivateCriteria;
+import org.neuronbit.xpi.common.utils.StringUtils;
+
+/**
+ * {@link Activate#value()} compiled once, when the activate extension class is loaded.
+ * <p>
+ * Every value is a condition on one criteria parameter: <code>key</code> matches any non-nil value of the parameter,
+ * <code>key:value</code> matches the given value only. The predicate matches when there is no condition or when any
+ * condition matches, its evaluation does not allocate.
+ */
+public final class ActivatePredicate {
+
+    private static final Condition[] NO_CONDITIONS = new Condition[0];
+
+    private final Condition[] conditions;
+
+    private ActivatePredicate(Condition[] conditions) {
+        this.conditions = conditions;
+    }
+
+    public static ActivatePredicate compile(String[] values) {
+        if (values == null || values.length == 0) {
+            return new ActivatePredicate(NO_CONDITIONS);
+        }
+        Condition[] conditions = new Condition[values.length];
+        for (int i = 0; i < values.length; i++) {
+            // @Active(value="key1:value1, key2:value2")
+            String key = values[i];
+            String expected = null;
+            if (key.contains(":")) {
+                String[] arr = key.split(":");
+                key = arr[0];
+                expected = arr.length > 1 ? arr[1] : "";
+            }
+            conditions[i] = new Condition(key.intern(), expected);
+        }
+        return new ActivatePredicate(conditions);
+    }
+
+    /**
+     * @return the keys of the criteria parameters the predicate depends on, in declaration order
+     */
+    public String[] getKeys() {
+        String[] keys = new String[conditions.length];
+        for (int i = 0; i < conditions.length; i++) {
+            keys[i] = conditions[i].key;
+        }
+        return keys;
+    }
+
+    public boolean test(ActivateCriteria criteria) {
+        if (conditions.length == 0) {
+            return true;
+        }
+        if (criteria == null) {
+            return false;
+        }
+        for (Condition condition : conditions) {
+            if (condition.matches(criteria.getParameter(condition.key))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Condition {
+
+        private final String key;
+
+        /**
+         * expected value, null to match any non-nil value
+         */
+        private final String expected;
+
+        private final boolean anyValue;
+
+        Condition(String key, String expected) {
+            this.key = key;
+            this.expected = expected;
+            this.anyValue = expected == null;
+        }
+
+        boolean matches(String actual) {
+            return anyValue ? StringUtils.isNotNil(actual) : expected.equals(actual);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.support;
+
+import org.neuronbit.xpi.common.extension.Activate;
+import org.neuronbit.xpi.common.utils.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Global order of the activate extensions of one extension interface.
+ * <p>
+ * {@link Activate#before()} and {@link Activate#after()} are edges between extension names, they are sorted
+ * topologically. Whenever several extensions have all their predecessors placed, the lowest {@link Activate#order()}
+ * comes first, then the lowest class simple name, as in {@link ActivateComparator}.
+ */
+public class ActivateSorter {
+
+    private static final Comparator<Node> NODE_COMPARATOR = Comparator.<Node>comparingInt(node -> node.order)
+            .thenComparing(node -> node.simpleName)
+            .thenComparing(node -> node.name);
+
+    private ActivateSorter() {
+    }
+
+    /**
+     * @param activates  activate annotations by extension name
+     * @param classNames extension class names by name
+     * @return the extension names of the activates, sorted
+     * @throws IllegalStateException if the before/after rules are cyclic
+     */
+    public static List<String> sort(Map<String, Activate> activates, Map<String, String> classNames) {
+        Map<String, Node> nodes = new LinkedHashMap<>();
+        activates.forEach((name, activate) -> {
+            String className = classNames.get(name);
+            nodes.put(name, new Node(name, className == null ? "" : ClassUtils.getSimpleName(className), activate.order()));
+        });
+        activates.forEach((name, activate) -> {
+            Node node = nodes.get(name);
+            for (String before : activate.before()) {
+                addEdge(node, nodes.get(before));
+            }
+            for (String after : activate.after()) {
+                addEdge(nodes.get(after), node);
+            }
+        });
+
+        PriorityQueue<Node> ready = new PriorityQueue<>(NODE_COMPARATOR);
+        for (Node node : nodes.values()) {
+            if (node.incoming == 0) {
+                ready.add(node);
+            }
+        }
+        List<String> sorted = new ArrayList<>(nodes.size());
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            sorted.add(node.name);
+            for (Node next : node.outgoing) {
+                if (--next.incoming == 0) {
+                    ready.add(next);
+                }
+            }
+        }
+
+        if (sorted.size() < nodes.size()) {
+            List<String> cyclic = new ArrayList<>();
+            nodes.forEach((name, node) -> {
+                if (node.incoming > 0) {
+                    cyclic.add(name);
+                }
+            });
+            throw new IllegalStateException("Cyclic before/after of the activate extensions " + cyclic);
+        }
+        return sorted;
+    }
+
+    private static void addEdge(Node from, Node to) {
+        if (from != null && to != null && from != to && !from.outgoing.contains(to)) {
+            from.outgoing.add(to);
+            to.incoming++;
+        }
+    }
+
+    private static class Node {
+        private final String name;
+        private final String simpleName;
+        private final int order;
+        private final List<Node> outgoing = new ArrayList<>();
+        private int incoming;
+
+        private Node(String name, String simpleName, int order) {
+            this.name = name;
+            this.simpleName = simpleName;
+            this.order = order;
+        }
+    }
+}
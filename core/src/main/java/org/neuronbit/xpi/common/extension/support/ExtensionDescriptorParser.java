@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.neuronbit.xpi.common.constants.Constants.COMMA_SPLIT_PATTERN;
+
+/**
+ * Parser of the extension configuration files, working on the bytes of the file.
+ * <p>
+ * One line per extension, <code>name=class</code> or <code>class</code>, <code>#</code> starts a comment, the
+ * blank lines are skipped. The parser is a cursor over the lines: {@link #next()} only finds the bounds of the line,
+ * its name and its class name, the strings are created when asked for.
+ * <pre>
+ *     ExtensionDescriptorParser parser = ExtensionDescriptorParser.parse(in);
+ *     while (parser.next()) {
+ *         load(parser.getName(), parser.getClassName());
+ *     }
+ * </pre>
+ * Not thread safe.
+ */
+public final class ExtensionDescriptorParser {
+
+    private final byte[] bytes;
+
+    private final int length;
+
+    private int position;
+
+    private int lineStart;
+
+    private int lineEnd;
+
+    private int nameEnd;
+
+    private int classStart;
+
+    public ExtensionDescriptorParser(byte[] bytes, int length) {
+        this.bytes = bytes;
+        this.length = length;
+    }
+
+    /**
+     * read the whole stream, which is not closed
+     */
+    public static ExtensionDescriptorParser parse(InputStream in) throws IOException {
+        byte[] buffer = new byte[4096];
+        int length = 0;
+        int read;
+        while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        return new ExtensionDescriptorParser(buffer, length);
+    }
+
+    /**
+     * move to the next line which is not blank once the comment is removed
+     *
+     * @return false if there is no more line
+     */
+    public boolean next() {
+        while (position < length) {
+            int start = position;
+            int end = start;
+            int comment = -1;
+            while (end < length && bytes[end] != '\n' && bytes[end] != '\r') {
+                if (comment < 0 && bytes[end] == '#') {
+                    comment = end;
+                }
+                end++;
+            }
+            position = end + 1;
+            if (comment >= 0) {
+                end = comment;
+            }
+            start = skipBlank(start, end);
+            end = trimBlank(start, end);
+            if (start < end) {
+                lineStart = start;
+                lineEnd = end;
+                int equals = indexOf('=', start, end);
+                if (equals > start) {
+                    nameEnd = trimBlank(start, equals);
+                    classStart = skipBlank(equals + 1, end);
+                } else {
+                    // same as a line without name
+                    nameEnd = -1;
+                    classStart = start;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the names of the current line as written, trimmed, or null if the line has no name
+     */
+    public String getName() {
+        return nameEnd < 0 ? null : newString(lineStart, nameEnd);
+    }
+
+    /**
+     * @return the class name of the current line, trimmed, may be empty
+     */
+    public String getClassName() {
+        return newString(classStart, lineEnd);
+    }
+
+    /**
+     * @return the current line, comment removed and trimmed
+     */
+    public String getLine() {
+        return newString(lineStart, lineEnd);
+    }
+
+    /**
+     * same as splitting with {@link org.neuronbit.xpi.common.constants.Constants#COMMA_SPLIT_PATTERN}, without
+     * the regular expression when there is a single name
+     */
+    public static String[] splitNames(String names) {
+        if (names.indexOf(',') < 0) {
+            return new String[]{names};
+        }
+        return COMMA_SPLIT_PATTERN.split(names);
+    }
+
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * blank as in {@link String#trim()}, the bytes of the multi-byte UTF-8 characters are never blank
+     */
+    private boolean isBlank(int i) {
+        return (bytes[i] & 0xFF) <= ' ';
+    }
+
+    private int skipBlank(int start, int end) {
+        while (start < end && isBlank(start)) {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimBlank(int start, int end) {
+        while (end > start && isBlank(end - 1)) {
+            end--;
+        }
+        return end;
+    }
+
+    private String newString(int start, int end) {
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.support;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of instances, created on demand up to the maximum size and kept once returned.
+ * <p>
+ * A borrower takes an idle instance, or creates one while the pool is not full, or waits for an instance to be
+ * returned. Borrowing and returning don't lock the other borrowers.
+ */
+public class InstancePool<T> {
+
+    private final Supplier<T> factory;
+
+    private final Semaphore permits;
+
+    private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param factory creates the instances, called by the borrowers
+     * @param maxSize maximum number of instances
+     */
+    public InstancePool(Supplier<T> factory, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.factory = factory;
+        this.permits = new Semaphore(maxSize);
+    }
+
+    /**
+     * @return an idle or new instance, waiting for a returned one if all are borrowed
+     * @throws IllegalStateException if interrupted while waiting
+     */
+    public T borrow() {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a pooled instance", e);
+        }
+        try {
+            T instance = idle.poll();
+            return instance != null ? instance : factory.get();
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void release(T instance) {
+        idle.offer(instance);
+        permits.release();
+    }
+
+    /**
+     * @return the number of instances available without waiting, idle or not created yet
+     */
+    public int available() {
+        return permits.availablePermits();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.support;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Instances by thread, created on demand for the calling thread.
+ * <p>
+ * Unlike a {@link ThreadLocal}, whose values are held by every thread until it dies, the instances are held by this
+ * object only: they are released with it, and with the thread which is weakly referenced.
+ */
+public class ThreadInstances<T> {
+
+    private final Supplier<T> factory;
+
+    private final Map<Thread, T> instances = new WeakHashMap<>();
+
+    /**
+     * @param factory creates the instances, called by the thread getting its instance
+     */
+    public ThreadInstances(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @return the instance of the calling thread, created on first call
+     */
+    public T get() {
+        Thread thread = Thread.currentThread();
+        synchronized (instances) {
+            T instance = instances.get(thread);
+            if (instance != null) {
+                return instance;
+            }
+        }
+        // created without the lock, the other threads get their instances meanwhile
+        T created = factory.get();
+        synchronized (instances) {
+            T instance = instances.putIfAbsent(thread, created);
+            return instance != null ? instance : created;
+        }
+    }
+
+    /**
+     * forget the instances of all the threads
+     */
+    public void clear() {
+        synchronized (instances) {
+            instances.clear();
+        }
+    }
+}
@@ -253,6 +253,13 @@ public class ClassUtils {
 
     }
 
+    /**
+     * simple name of a class given by its name, without loading it: the part after the last '.' or '$'
+     */
+    public static String getSimpleName(String className) {
+        return className.substring(Math.max(className.lastIndexOf(PACKAGE_SEPARATOR_CHAR), className.lastIndexOf('$')) + 1);
+    }
+
     public static String simpleClassName(Class<?> clazz) {
         if (clazz == null) {
             throw new NullPointerException("clazz");
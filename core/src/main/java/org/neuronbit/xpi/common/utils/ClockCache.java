@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.utils;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded cache evicting with the CLOCK (second chance) algorithm, read without lock.
+ * <p>
+ * A hit is a {@link ConcurrentHashMap} lookup which marks the entry as referenced, a value is cached, referenced, on
+ * its first {@link #put(Object, Object)}. When the cache grows over its capacity, the clock hand walks the entries: a
+ * referenced entry loses its mark and is kept, an entry not referenced since the last pass is evicted. Only the
+ * eviction is serialized.
+ */
+public class ClockCache<K, V> {
+
+    private final int capacity;
+
+    private final ConcurrentHashMap<K, Node<V>> nodes;
+
+    private Iterator<Map.Entry<K, Node<V>>> hand;
+
+    public ClockCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.nodes = new ConcurrentHashMap<>(Math.min(capacity, 1024));
+    }
+
+    /**
+     * @return the cached value, or null if not cached
+     */
+    public V get(K key) {
+        Node<V> node = nodes.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        return node.value;
+    }
+
+    public void put(K key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value == null");
+        }
+        nodes.put(key, new Node<>(value));
+        if (nodes.size() > capacity) {
+            evict();
+        }
+    }
+
+    public V remove(K key) {
+        Node<V> node = nodes.remove(key);
+        return node == null ? null : node.value;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public void clear() {
+        nodes.clear();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private synchronized void evict() {
+        while (nodes.size() > capacity) {
+            if (hand == null || !hand.hasNext()) {
+                hand = nodes.entrySet().iterator();
+                if (!hand.hasNext()) {
+                    return;
+                }
+            }
+            Map.Entry<K, Node<V>> entry = hand.next();
+            Node<V> node = entry.getValue();
+            if (node.referenced) {
+                node.referenced = false;
+            } else {
+                nodes.remove(entry.getKey(), node);
+            }
+        }
+    }
+
+    private static final class Node<V> {
+
+        private final V value;
+
+        private volatile boolean referenced = true;
+
+        Node(V value) {
+            this.value = value;
+        }
+    }
+}
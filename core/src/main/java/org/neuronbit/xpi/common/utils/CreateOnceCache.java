@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.utils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Cache of values created at most once per key, read without lock.
+ * <p>
+ * The created values are published in an immutable map replaced on every creation: {@link #get(Object)} is a single
+ * volatile read followed by a hash lookup. A value being created is represented by a future, the threads asking for
+ * the same key wait for it while the other keys are still read and created without waiting. A failed creation is
+ * not cached, the next call creates the value again.
+ * <p>
+ * Suited to small maps written a few times and read many times, such as the extension instances of an
+ * extension interface.
+ */
+public class CreateOnceCache<K, V> {
+
+    private volatile Map<K, V> values = Collections.emptyMap();
+
+    private final ConcurrentMap<K, Creation<V>> creations = new ConcurrentHashMap<>();
+
+    /**
+     * @return the created value, or null if not created yet
+     */
+    public V get(K key) {
+        return values.get(key);
+    }
+
+    /**
+     * @return the created value, created by the calling thread with the given function if not created yet
+     * @throws IllegalStateException if the function asks for the value it is creating
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        V value = values.get(key);
+        if (value != null) {
+            return value;
+        }
+        Creation<V> creation = new Creation<>();
+        Creation<V> existing = creations.putIfAbsent(key, creation);
+        if (existing != null) {
+            return existing.await(key);
+        }
+        try {
+            // created while the previous creation was being removed
+            value = values.get(key);
+            if (value == null) {
+                value = function.apply(key);
+                if (value == null) {
+                    throw new IllegalStateException("Created null for " + key);
+                }
+                put(key, value);
+            }
+            creation.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            creation.completeExceptionally(e);
+            throw e;
+        } finally {
+            // after the value is published, so the next creations of the key find it
+            creations.remove(key, creation);
+        }
+    }
+
+    private synchronized void put(K key, V value) {
+        Map<K, V> copy = new HashMap<>(values);
+        copy.put(key, value);
+        values = Collections.unmodifiableMap(copy);
+    }
+
+    public synchronized V remove(K key) {
+        if (!values.containsKey(key)) {
+            return null;
+        }
+        Map<K, V> copy = new HashMap<>(values);
+        V value = copy.remove(key);
+        values = Collections.unmodifiableMap(copy);
+        return value;
+    }
+
+    public synchronized void clear() {
+        values = Collections.emptyMap();
+    }
+
+    /**
+     * @return the created values, an immutable snapshot
+     */
+    public Map<K, V> asMap() {
+        return values;
+    }
+
+    private static final class Creation<V> extends CompletableFuture<V> {
+
+        private final Thread creator = Thread.currentThread();
+
+        V await(Object key) {
+            if (creator == Thread.currentThread()) {
+                throw new IllegalStateException("Circular creation of " + key);
+            }
+            try {
+                return join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -56,6 +56,18 @@ public class JavassistCompilerTest extends JavaCodeTest {
         });
     }
 
+    @Test
+    public void testSharedClassPool() throws Exception {
+        ClassLoader classLoader = JavassistCompiler.class.getClassLoader();
+        Assertions.assertSame(ClassPools.getClassPool(classLoader), ClassPools.getClassPool(classLoader));
+        Assertions.assertNotSame(ClassPools.newClassPool(classLoader), ClassPools.newClassPool(classLoader));
+
+        JavassistCompiler compiler = new JavassistCompiler();
+        Class<?> clazz = compiler.compile(getSimpleCodeWithImports(), classLoader);
+        // the built class does not stay in the shared pool
+        Assertions.assertNull(ClassPools.getClassPool(classLoader).getOrNull(clazz.getName()));
+    }
+
     @Test
     public void testCompileJavaClassWithImport() throws Exception {
         JavassistCompiler compiler = new JavassistCompiler();
@@ -20,6 +20,8 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
 
 public class JdkCompilerTest extends JavaCodeTest {
 
@@ -32,6 +34,60 @@ public class JdkCompilerTest extends JavaCodeTest {
         Assertions.assertEquals("Hello world!", sayHello.invoke(instance));
     }
 
+    @Test
+    public void test_compileJavaClass_cached() throws Exception {
+        String code = getSimpleCode();
+        Class<?> compiled = new JdkCompiler().compile(code, JdkCompiler.class.getClassLoader());
+        int size = BytecodeCache.size();
+
+        // another compiler defines the class in its own class loader, from the cached bytecode
+        Class<?> clazz = new JdkCompiler().compile(code, JdkCompiler.class.getClassLoader());
+        Assertions.assertNotSame(compiled, clazz);
+        Assertions.assertEquals(compiled.getName(), clazz.getName());
+        Assertions.assertEquals(size, BytecodeCache.size());
+        Object instance = clazz.newInstance();
+        Method sayHello = instance.getClass().getMethod("sayHello");
+        Assertions.assertEquals("Hello world!", sayHello.invoke(instance));
+
+        new JdkCompiler("11").compile(code, JdkCompiler.class.getClassLoader());
+        Assertions.assertEquals(size + 1, BytecodeCache.size());
+    }
+
+    @Test
+    public void test_compileJavaClass_cachedNestedClasses() throws Exception {
+        String className = "Outer" + SUBFIX.getAndIncrement();
+        String code = "package p1; public class " + className + " { "
+                              + "public String hi() { return new Inner().v() + new Object() { public String toString() { return \"!\"; } }; } "
+                              + "static class Inner { String v() { return \"ok\"; } } }";
+        Class<?> compiled = new JdkCompiler().compile(code, JdkCompiler.class.getClassLoader());
+        Assertions.assertEquals("ok!", compiled.getMethod("hi").invoke(compiled.newInstance()));
+
+        // defined from the cache, with its nested and anonymous classes
+        Class<?> clazz = new JdkCompiler().compile(code, JdkCompiler.class.getClassLoader());
+        Assertions.assertNotSame(compiled, clazz);
+        Assertions.assertEquals("ok!", clazz.getMethod("hi").invoke(clazz.newInstance()));
+    }
+
+    @Test
+    public void test_compileJavaClasses() throws Exception {
+        JdkCompiler compiler = new JdkCompiler();
+        List<Class<?>> classes = compiler.compile(Arrays.asList(getSimpleCode(), getSimpleCode()), JdkCompiler.class.getClassLoader());
+        Assertions.assertEquals(2, classes.size());
+        Assertions.assertNotEquals(classes.get(0), classes.get(1));
+        for (Class<?> clazz : classes) {
+            Object instance = clazz.newInstance();
+            Method sayHello = instance.getClass().getMethod("sayHello");
+            Assertions.assertEquals("Hello world!", sayHello.invoke(instance));
+        }
+    }
+
+    @Test
+    public void test_compileJavaClasses_failed() throws Exception {
+        JdkCompiler compiler = new JdkCompiler();
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> compiler.compile(Arrays.asList(getSimpleCode(), getSimpleCodeWithSyntax()), JdkCompiler.class.getClassLoader()));
+    }
+
     @Test
     public void test_compileJavaClass0() throws Exception {
         Assertions.assertThrows(IllegalStateException.class, () -> {
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension;
+
+import org.neuronbit.xpi.common.extension.ext1.SimpleExt;
+import org.neuronbit.xpi.common.extension.ext1.SimpleParam;
+import org.neuronbit.xpi.common.extension.ext3.UseProtocolKeyExt;
+import org.neuronbit.xpi.common.extension.ext4.NoUrlParamExt;
+import org.neuronbit.xpi.common.extension.ext5.NoAdaptiveMethodExt;
+
+import javassist.ClassPool;
+import javassist.LoaderClassPath;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+public class AdaptiveClassBytecodeGeneratorTest {
+
+    @SPI
+    public interface PrimitiveExt {
+        @Adaptive("protocol")
+        long mix(long l, SimpleParam param, double d, int i) throws IOException;
+
+        @Adaptive("protocol")
+        void run(SimpleParam param);
+
+        boolean check(float f);
+    }
+
+    @Test
+    public void testDispatch() throws Exception {
+        SimpleExt ext = newInstance(SimpleExt.class, "impl1");
+
+        Assertions.assertEquals("Ext1Impl1-echo", ext.echo(new SimpleParam(), "haha"));
+        SimpleParam param = new SimpleParam();
+        param.setSimpleExt("impl2");
+        Assertions.assertEquals("Ext1Impl2-echo", ext.echo(param, "haha"));
+        Assertions.assertEquals("Ext1Impl1-echo", ext.echo(null, "haha"));
+
+        param = new SimpleParam();
+        param.setKey2("impl2");
+        Assertions.assertEquals("Ext1Impl2-yell", ext.yell(param, "haha"));
+        param.setKey1("impl3");
+        Assertions.assertEquals("Ext1Impl3-yell", ext.yell(param, "haha"));
+
+        UnsupportedOperationException e = Assertions.assertThrows(UnsupportedOperationException.class, () -> ext.bang(new SimpleParam(), 1));
+        Assertions.assertTrue(e.getMessage().contains("is not adaptive method"));
+    }
+
+    @Test
+    public void testKeyOrder() throws Exception {
+        UseProtocolKeyExt ext = newInstance(UseProtocolKeyExt.class, "impl1");
+
+        SimpleParam param = new SimpleParam();
+        param.setProtocol("impl3");
+        Assertions.assertEquals("Ext3Impl3-echo", ext.echo(param, "s"));
+        param.setKey1("impl2");
+        Assertions.assertEquals("Ext3Impl2-echo", ext.echo(param, "s"));
+    }
+
+    @Test
+    public void testPrimitiveArguments() throws Exception {
+        PrimitiveExt ext = newInstance(PrimitiveExt.class, null);
+
+        IllegalStateException e = Assertions.assertThrows(IllegalStateException.class, () -> ext.mix(1L, new SimpleParam(), 1D, 1));
+        Assertions.assertTrue(e.getMessage().contains("Failed to get extension (" + PrimitiveExt.class.getName() + ") name"));
+        Assertions.assertThrows(IllegalStateException.class, () -> ext.run(null));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> ext.check(1F));
+        Assertions.assertArrayEquals(new Class<?>[]{IOException.class},
+                ext.getClass().getMethod("mix", long.class, SimpleParam.class, double.class, int.class).getExceptionTypes());
+    }
+
+    @Test
+    public void testNotGenerated() {
+        Assertions.assertThrows(IllegalStateException.class, () -> newInstance(NoAdaptiveMethodExt.class, null));
+        Assertions.assertThrows(IllegalStateException.class, () -> newInstance(NoUrlParamExt.class, null));
+    }
+
+    private static <T> T newInstance(Class<T> type, String defaultExtName) throws Exception {
+        ClassPool pool = new ClassPool(true);
+        pool.appendClassPath(new LoaderClassPath(type.getClassLoader()));
+        byte[] bytes = new AdaptiveClassBytecodeGenerator(type, defaultExtName).generate(pool).toBytecode();
+        ClassLoader classLoader = new ClassLoader(type.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                if (name.endsWith("$Adaptive")) {
+                    return defineClass(name, bytes, 0, bytes.length);
+                }
+                throw new ClassNotFoundException(name);
+            }
+        };
+        Class<?> clazz = classLoader.loadClass(new AdaptiveClassBytecodeGenerator(type, defaultExtName).getClassName());
+        return type.cast(clazz.getDeclaredConstructor().newInstance());
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension;
+
+import org.neuronbit.xpi.common.extension.ext1.SimpleExt;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveExtensionDispatcherTest {
+
+    @Test
+    public void testGetExtension() {
+        AdaptiveExtensionDispatcher<SimpleExt> dispatcher = new AdaptiveExtensionDispatcher<>(SimpleExt.class);
+        ExtensionFactory<SimpleExt> factory = ExtensionFactory.getExtensionFactory(SimpleExt.class);
+        Assertions.assertSame(factory, dispatcher.getFactory());
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertSame(factory.getExtension("impl1"), dispatcher.getExtension("impl1"));
+            Assertions.assertSame(factory.getExtension("impl2"), dispatcher.getExtension("impl2"));
+            Assertions.assertSame(factory.getExtension("impl3"), dispatcher.getExtension("impl3"));
+            Assertions.assertSame(factory.getExtension("impl1"), dispatcher.getExtension(new String("impl1")));
+        }
+    }
+
+    @Test
+    public void testNoSuchExtension() {
+        AdaptiveExtensionDispatcher<SimpleExt> dispatcher = new AdaptiveExtensionDispatcher<>(SimpleExt.class);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> dispatcher.getExtension("missing"));
+        Assertions.assertThrows(IllegalStateException.class, () -> dispatcher.getExtension("missing"));
+        Assertions.assertNotNull(dispatcher.getExtension("impl1"));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension;
+
+import org.junit.jupiter.api.Test;
+import org.neuronbit.xpi.common.extension.ext1.SimpleParam;
+import org.neuronbit.xpi.common.extension.ext17_bootstrap.AppExt;
+import org.neuronbit.xpi.common.extension.ext17_bootstrap.CacheExt;
+import org.neuronbit.xpi.common.extension.ext17_bootstrap.CycleExt;
+import org.neuronbit.xpi.common.extension.ext17_bootstrap.DbExt;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExtensionBootstrapTest {
+
+    @Test
+    public void test_plan() {
+        List<ExtensionBootstrap.Node> nodes = ExtensionBootstrap.plan(singletonList(AppExt.class));
+        Map<String, ExtensionBootstrap.Node> byName = nodes.stream()
+                .collect(Collectors.toMap(ExtensionBootstrap.Node::toString, Function.identity()));
+
+        String app = AppExt.class.getName() + "[app]";
+        String cache = CacheExt.class.getName() + "[cache]";
+        String db = DbExt.class.getName() + "[db]";
+        String cacheAdaptive = CacheExt.class.getName() + "$Adaptive";
+        String dbAdaptive = DbExt.class.getName() + "$Adaptive";
+        assertEquals(5, nodes.size());
+        assertTrue(byName.keySet().containsAll(asList(app, cache, db, cacheAdaptive, dbAdaptive)), byName.keySet().toString());
+        assertEquals(asList(byName.get(dbAdaptive), byName.get(cacheAdaptive)), byName.get(app).getDependencies());
+        assertEquals(singletonList(byName.get(dbAdaptive)), byName.get(cache).getDependencies());
+        assertTrue(byName.get(db).getDependencies().isEmpty());
+        assertTrue(byName.get(dbAdaptive).isAdaptive());
+
+        for (ExtensionBootstrap.Node node : nodes) {
+            for (ExtensionBootstrap.Node dependency : node.getDependencies()) {
+                assertTrue(nodes.indexOf(dependency) < nodes.indexOf(node), dependency + " after " + node);
+            }
+        }
+    }
+
+    @Test
+    public void test_plan_cycle() {
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> ExtensionBootstrap.plan(singletonList(CycleExt.class)));
+        assertThat(e.getMessage(), containsString("Circular extension dependency"));
+        assertThat(e.getMessage(), containsString(CycleExt.class.getName() + "$Adaptive"));
+    }
+
+    @Test
+    public void test_bootstrap() {
+        ExtensionBootstrap.Report report = ExtensionBootstrap.bootstrap(singletonList(AppExt.class));
+
+        assertEquals(5, report.getNodes().size());
+        assertTrue(report.getFailedNodes().isEmpty());
+        for (ExtensionBootstrap.Node node : report.getNodes()) {
+            assertTrue(node.getElapsedNanos() >= 0, node.toString());
+            assertNotNull(node.getThread());
+            for (ExtensionBootstrap.Node dependency : node.getDependencies()) {
+                assertTrue(dependency.getStartNanos() + dependency.getElapsedNanos() <= node.getStartNanos(), dependency + " not created before " + node);
+            }
+        }
+        assertThat(report.toString(), containsString(AppExt.class.getName() + "[app]"));
+
+        ExtensionFactory<AppExt> factory = ExtensionFactory.getExtensionFactory(AppExt.class);
+        assertTrue(factory.getLoadedExtensions().contains("app"));
+        AppExt app = factory.getExtension("app");
+        SimpleParam param = new SimpleParam();
+        assertEquals("cache-db-hello", app.getCacheExt().echo(param, "hello"));
+        assertEquals("db-hello", app.getDbExt().echo(param, "hello"));
+    }
+}
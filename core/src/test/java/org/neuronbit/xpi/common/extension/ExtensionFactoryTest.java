@@ -20,6 +20,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.neuronbit.xpi.common.extension.activate.ActivateExt1;
 import org.neuronbit.xpi.common.extension.activate.impl.ActivateExt1Impl1;
+import org.neuronbit.xpi.common.extension.activate.impl.ManualActivateExtImpl;
 import org.neuronbit.xpi.common.extension.activate.impl.OrderActivateExtImpl1;
 import org.neuronbit.xpi.common.extension.duplicated.DuplicatedOverriddenExt;
 import org.neuronbit.xpi.common.extension.duplicated.DuplicatedWithoutOverriddenExt;
@@ -27,7 +28,17 @@ import org.neuronbit.xpi.common.extension.ext1.SimpleExt;
 import org.neuronbit.xpi.common.extension.ext1.impl.SimpleExtImpl1;
 import org.neuronbit.xpi.common.extension.ext1.impl.SimpleExtImpl2;
 import org.neuronbit.xpi.common.extension.ext10_multi_names.Ext10MultiNames;
+import org.neuronbit.xpi.common.extension.ext12_lazy.LazyExt;
+import org.neuronbit.xpi.common.extension.ext12_lazy.impl.LazyExtImpl1;
+import org.neuronbit.xpi.common.extension.ext15_scope.ScopedExt;
+import org.neuronbit.xpi.common.extension.ext16_async.AsyncExt;
+import org.neuronbit.xpi.common.extension.ext16_async.impl.FailingAsyncExt;
+import org.neuronbit.xpi.common.extension.ext16_async.impl.SlowAsyncExt;
 import org.neuronbit.xpi.common.extension.ext2.Ext2;
+import org.neuronbit.xpi.common.extension.ext21_dispatch_scope.DispatchScopeExt;
+import org.neuronbit.xpi.common.extension.ext21_dispatch_scope.impl.PooledDispatchScopeExt;
+import org.neuronbit.xpi.common.extension.ext21_dispatch_scope.impl.PrototypeDispatchScopeExt;
+import org.neuronbit.xpi.common.extension.ext21_dispatch_scope.impl.ThreadDispatchScopeExt;
 import org.neuronbit.xpi.common.extension.ext6_wrap.WrappedExt;
 import org.neuronbit.xpi.common.extension.ext6_wrap.impl.Ext5Wrapper1;
 import org.neuronbit.xpi.common.extension.ext6_wrap.impl.Ext5Wrapper2;
@@ -43,10 +54,22 @@ import org.neuronbit.xpi.common.extension.injection.InjectExt;
 import org.neuronbit.xpi.common.extension.injection.impl.InjectExtImpl;
 import org.neuronbit.xpi.common.lang.Prioritized;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.hamcrest.CoreMatchers.allOf;
 import static org.hamcrest.CoreMatchers.anyOf;
@@ -55,7 +78,11 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.neuronbit.xpi.common.extension.ExtensionClassLoader.getLoadingStrategies;
@@ -97,6 +124,17 @@ public class ExtensionFactoryTest {
         }
     }
 
+    @Test
+    public void test_getExtensionFactory_Cached() throws Exception {
+        ExtensionFactory<Ext9Empty> factory = getExtensionFactory(Ext9Empty.class);
+        assertSame(factory, getExtensionFactory(Ext9Empty.class));
+
+        ExtensionFactory.resetExtensionFactory(Ext9Empty.class);
+        ExtensionFactory<Ext9Empty> recreated = getExtensionFactory(Ext9Empty.class);
+        assertNotSame(factory, recreated);
+        assertSame(recreated, getExtensionFactory(Ext9Empty.class));
+    }
+
     @Test
     public void test_getDefaultExtension() throws Exception {
         SimpleExt ext = getExtensionFactory(SimpleExt.class).getDefaultExtension();
@@ -147,6 +185,262 @@ public class ExtensionFactoryTest {
         assertEquals(2, list.size());
     }
 
+    @Test
+    public void test_getActivateExtension_Cached() throws Exception {
+        ExtensionFactory<ActivateExt1> factory = getExtensionFactory(ActivateExt1.class);
+        try {
+            Map<String, String> params = new HashMap<>();
+            params.put("value", "v");
+            List<ActivateExt1> list = factory.getActivateExtension(new ActivateCriteria(params), new String[]{"order1"}, "value");
+            assertSame(list, factory.getActivateExtension(new ActivateCriteria(params), new String[]{"order1"}, "value"));
+            assertEquals(2, list.size());
+            assertThrows(UnsupportedOperationException.class, () -> list.add(list.get(0)));
+
+            // parameters not referenced by the activate values don't matter
+            params.put("other", "o");
+            assertSame(list, factory.getActivateExtension(new ActivateCriteria(params), new String[]{"order1"}, "value"));
+
+            assertEquals(1, factory.getActivateExtension(new ActivateCriteria(params), new String[0], "value").size());
+            assertEquals(0, factory.getActivateExtension(new ActivateCriteria(), new String[0], "value").size());
+
+            factory.addExtension("manual", ManualActivateExtImpl.class);
+            List<ActivateExt1> reloaded = factory.getActivateExtension(new ActivateCriteria(params), new String[]{"order1"}, "value");
+            assertNotSame(list, reloaded);
+            assertEquals(list, reloaded);
+        } finally {
+            ExtensionFactory.resetExtensionFactory(ActivateExt1.class);
+        }
+    }
+
+    @Test
+    public void test_getActivateExtension_Scoped() throws Exception {
+        ExtensionFactory<DispatchScopeExt> factory = getExtensionFactory(DispatchScopeExt.class);
+        List<DispatchScopeExt> list = factory.getActivateExtension(new ActivateCriteria(), new String[0]);
+        assertEquals(3, list.size());
+        assertTrue(list.get(0) instanceof PrototypeDispatchScopeExt);
+        assertTrue(list.get(1) instanceof ThreadDispatchScopeExt);
+        // the pooled extension is a proxy borrowing an instance for every call
+        assertTrue(list.get(2).self(null) instanceof PooledDispatchScopeExt);
+
+        List<DispatchScopeExt> again = factory.getActivateExtension(new ActivateCriteria(), new String[0]);
+        assertNotSame(list.get(0), again.get(0));
+        assertSame(list.get(1), again.get(1));
+        assertSame(list.get(2), again.get(2));
+        assertSame(list.get(2).self(null), again.get(2).self(null));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            DispatchScopeExt other = executor.submit(() -> factory.getActivateExtension(new ActivateCriteria(), new String[0]).get(1)).get();
+            assertTrue(other instanceof ThreadDispatchScopeExt);
+            assertNotSame(list.get(1), other);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_Scope_pooled_proxies() throws Exception {
+        ExtensionFactory<DispatchScopeExt> factory = getExtensionFactory(DispatchScopeExt.class);
+        DispatchScopeExt pooled = factory.getDefaultExtension();
+        assertTrue(pooled.self(null) instanceof PooledDispatchScopeExt);
+        assertSame(pooled, factory.getOrDefaultExtension("pooled"));
+        assertSame(pooled, factory.getOrDefaultExtension("missing"));
+        assertSame(pooled, factory.getExtensionAsync("pooled").get(10, TimeUnit.SECONDS));
+
+        List<DispatchScopeExt> activates = factory.getActivateExtensions();
+        assertEquals(3, activates.size());
+        assertSame(pooled, activates.get(2));
+        assertTrue(activates.get(0) instanceof PrototypeDispatchScopeExt);
+
+        Set<DispatchScopeExt> instances = factory.getSupportedExtensionInstances();
+        assertEquals(3, instances.size());
+        assertTrue(instances.contains(pooled));
+    }
+
+    @Test
+    public void test_preload() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Map<Class<?>, Long> elapsed = ExtensionFactory.preload(Arrays.asList(SimpleExt.class, Ext10MultiNames.class, SimpleExt.class), executor);
+            assertEquals(Arrays.asList(SimpleExt.class, Ext10MultiNames.class), new ArrayList<>(elapsed.keySet()));
+            assertTrue(elapsed.values().stream().allMatch(time -> time >= 0));
+            assertTrue(getExtensionFactory(SimpleExt.class).hasExtension("impl1"));
+
+            IllegalStateException e = assertThrows(IllegalStateException.class,
+                    () -> ExtensionFactory.preload(Arrays.asList(SimpleExt.class, NoSpiExt.class), executor));
+            assertThat(e.getMessage(), containsString(NoSpiExt.class.getName()));
+            assertEquals(1, e.getSuppressed().length);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_Scope_prototype() throws Exception {
+        ExtensionFactory<ScopedExt> factory = getExtensionFactory(ScopedExt.class);
+        ScopedExt ext = factory.getExtension("prototype");
+        assertEquals("wrapped-PrototypeScopedExt-haha", ext.echo("haha"));
+        assertNotSame(ext.unwrap(), factory.getExtension("prototype").unwrap());
+        assertNull(factory.getLoadedExtension("prototype"));
+
+        assertSame(factory.getExtension("singleton"), factory.getExtension("singleton"));
+    }
+
+    @Test
+    public void test_Scope_thread() throws Exception {
+        ExtensionFactory<ScopedExt> factory = getExtensionFactory(ScopedExt.class);
+        ScopedExt ext = factory.getExtension("thread");
+        assertEquals("wrapped-ThreadScopedExt-haha", ext.echo("haha"));
+        assertSame(ext, factory.getExtension("thread"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ScopedExt other = executor.submit(() -> factory.getExtension("thread")).get();
+            assertNotSame(ext.unwrap(), other.unwrap());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_Scope_thread_unwrapped() throws Exception {
+        ExtensionFactory<ScopedExt> factory = getExtensionFactory(ScopedExt.class);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> {
+                ScopedExt unwrapped = factory.getExtension("thread", false);
+                assertEquals("ThreadScopedExt-haha", unwrapped.echo("haha"));
+                assertSame(unwrapped, factory.getExtension("thread", false));
+                // the unwrapped instance of the thread doesn't replace the wrapped one
+                assertEquals("wrapped-ThreadScopedExt-haha", factory.getExtension("thread").echo("haha"));
+            }).get();
+            assertEquals("wrapped-ThreadScopedExt-haha", factory.getExtension("thread").echo("haha"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_Scope_pooled() throws Exception {
+        ExtensionFactory<ScopedExt> factory = getExtensionFactory(ScopedExt.class);
+        assertThrows(IllegalStateException.class, () -> factory.getExtension("pooled"));
+        assertThrows(IllegalStateException.class, () -> factory.borrowExtension("singleton"));
+
+        ScopedExt first;
+        ScopedExt second;
+        try (PooledExtension<ScopedExt> pooled1 = factory.borrowExtension("pooled");
+             PooledExtension<ScopedExt> pooled2 = factory.borrowExtension("pooled")) {
+            assertEquals("wrapped-PooledScopedExt-haha", pooled1.get().echo("haha"));
+            assertNotSame(pooled1.get().unwrap(), pooled2.get().unwrap());
+            first = pooled1.get();
+            second = pooled2.get();
+
+            // the pool of 2 instances is exhausted
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<ScopedExt> waiting = executor.submit(() -> {
+                    try (PooledExtension<ScopedExt> pooled3 = factory.borrowExtension("pooled")) {
+                        return pooled3.get();
+                    }
+                });
+                assertThrows(TimeoutException.class, () -> waiting.get(100, TimeUnit.MILLISECONDS));
+                pooled1.close();
+                assertSame(first, waiting.get(10, TimeUnit.SECONDS));
+            } finally {
+                executor.shutdown();
+            }
+            assertThrows(IllegalStateException.class, pooled1::get);
+        }
+        // the returned instances are reused
+        try (PooledExtension<ScopedExt> pooled1 = factory.borrowExtension("pooled");
+             PooledExtension<ScopedExt> pooled2 = factory.borrowExtension("pooled")) {
+            Set<ScopedExt> instances = new HashSet<>(Arrays.asList(pooled1.get(), pooled2.get()));
+            assertEquals(new HashSet<>(Arrays.asList(first, second)), instances);
+        }
+    }
+
+    @Test
+    public void test_getExtensionAsync() throws Exception {
+        ExtensionFactory.resetExtensionFactory(AsyncExt.class);
+        ExtensionFactory<AsyncExt> factory = getExtensionFactory(AsyncExt.class);
+        SlowAsyncExt.RELEASE = new CountDownLatch(1);
+        int initialized = SlowAsyncExt.INITIALIZED.get();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CompletableFuture<AsyncExt> future = factory.getExtensionAsync("slow", executor);
+            // the concurrent callers share the in-flight future
+            assertSame(future, factory.getExtensionAsync("slow", executor));
+            assertFalse(future.isDone());
+
+            SlowAsyncExt.RELEASE.countDown();
+            AsyncExt ext = future.get(10, TimeUnit.SECONDS);
+            assertSame(factory.getExtension("slow"), ext);
+            assertEquals(initialized + 1, SlowAsyncExt.INITIALIZED.get());
+            // injected before initialized
+            assertNotNull(ext.getSimpleExt());
+            assertSame(ext, factory.getExtensionAsync("slow", executor).getNow(null));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_getExtensionAsync_failure() throws Exception {
+        ExtensionFactory.resetExtensionFactory(AsyncExt.class);
+        ExtensionFactory<AsyncExt> factory = getExtensionFactory(AsyncExt.class);
+        int attempts = FailingAsyncExt.ATTEMPTS.get();
+        try {
+            factory.getExtensionAsync("failing").get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+            assertThat(expected.getCause(), instanceOf(IllegalStateException.class));
+        }
+        // the failure is not cached
+        assertThrows(ExecutionException.class, () -> factory.getExtensionAsync("failing").get(10, TimeUnit.SECONDS));
+        assertEquals(attempts + 2, FailingAsyncExt.ATTEMPTS.get());
+    }
+
+    @Test
+    public void test_initializeAllAsync() throws Exception {
+        ExtensionFactory.resetExtensionFactory(AsyncExt.class);
+        ExtensionFactory<AsyncExt> factory = getExtensionFactory(AsyncExt.class);
+        SlowAsyncExt.RELEASE = new CountDownLatch(1);
+        CompletableFuture<List<AsyncExt>> future = factory.initializeAllAsync();
+        assertSame(future, factory.initializeAllAsync());
+
+        SlowAsyncExt.RELEASE.countDown();
+        assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        // the other extensions are created despite the failure
+        assertNotNull(factory.getLoadedExtension("slow"));
+        assertNotNull(factory.getLoadedExtension("fast"));
+        assertNull(factory.getLoadedExtension("failing"));
+        assertNotSame(future, factory.initializeAllAsync());
+    }
+
+    @Test
+    public void test_LazyDiscovery() throws Exception {
+        System.setProperty(ExtensionClassLoader.LAZY_DISCOVERY_PROPERTY, "true");
+        try {
+            ExtensionFactory.resetExtensionFactory(LazyExt.class);
+            ExtensionFactory<LazyExt> factory = getExtensionFactory(LazyExt.class);
+
+            assertEquals(new HashSet<>(Arrays.asList("impl1", "impl2")), factory.getSupportedExtensions());
+            assertEquals(0, LazyExt.INITIALIZED.get());
+
+            List<LazyExt> activates = factory.getActivateExtension(new ActivateCriteria(), new String[0], "lazy");
+            assertEquals(1, activates.size());
+            assertThat(activates.get(0), instanceOf(LazyExtImpl1.class));
+            assertEquals(1, LazyExt.INITIALIZED.get());
+
+            assertEquals("LazyExtImpl2-hello", factory.getExtension("impl2").echo("hello"));
+            assertEquals(2, LazyExt.INITIALIZED.get());
+            assertEquals("impl1", factory.getExtensionName(LazyExtImpl1.class));
+        } finally {
+            System.clearProperty(ExtensionClassLoader.LAZY_DISCOVERY_PROPERTY);
+            ExtensionFactory.resetExtensionFactory(LazyExt.class);
+        }
+    }
+
     @Test
     public void test_getExtension_ExceptionNoExtension() throws Exception {
         try {
@@ -17,12 +17,17 @@
 package org.neuronbit.xpi.common.extension;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
+import org.neuronbit.xpi.common.compiler.support.ClassDefiner;
 import org.neuronbit.xpi.common.extension.adaptive.HasAdaptiveExt;
 import org.neuronbit.xpi.common.extension.adaptive.impl.HasAdaptiveExt_ManualAdaptive;
 import org.neuronbit.xpi.common.extension.ext1.SimpleExt;
 import org.neuronbit.xpi.common.extension.ext1.SimpleParam;
+import org.neuronbit.xpi.common.extension.ext14_hidden.HiddenExt;
 import org.neuronbit.xpi.common.extension.ext2.Ext2;
+import org.neuronbit.xpi.common.extension.ext21_dispatch_scope.DispatchScopeExt;
+import org.neuronbit.xpi.common.extension.ext21_dispatch_scope.impl.PooledDispatchScopeExt;
 import org.neuronbit.xpi.common.extension.ext3.UseProtocolKeyExt;
 import org.neuronbit.xpi.common.extension.ext4.NoUrlParamExt;
 import org.neuronbit.xpi.common.extension.ext5.NoAdaptiveMethodExt;
@@ -31,11 +36,18 @@ import org.neuronbit.xpi.common.extension.ext6_inject.SimpleParamExt6;
 import org.neuronbit.xpi.common.extension.ext6_inject.impl.Ext6Impl2;
 import org.neuronbit.xpi.common.utils.LogUtil;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import static org.hamcrest.CoreMatchers.allOf;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -128,6 +140,30 @@ public class ExtensionFactory_Adaptive_Test {
         }
     }
 
+    @Test
+    public void test_getAdaptiveExtension_hiddenClass() throws Exception {
+        System.setProperty(ClassDefiner.ADAPTIVE_DEFINE_PROPERTY, ClassDefiner.HIDDEN);
+        try {
+            Assumptions.assumeTrue(ClassDefiner.HIDDEN.equals(ClassDefiner.getStrategy()), "hidden classes need java 15");
+            ExtensionFactory.resetExtensionFactory(HiddenExt.class);
+
+            HiddenExt ext = ExtensionFactory.getExtensionFactory(HiddenExt.class).getAdaptiveExtension();
+            assertEquals("HiddenExtImpl1-haha", ext.echo(new SimpleParam(), "haha"));
+            assertEquals(Boolean.TRUE, Class.class.getMethod("isHidden").invoke(ext.getClass()));
+
+            // neither registered in the class loader nor kept once the extension factory is reset, so it can be unloaded
+            Class<?> adaptiveClass = ext.getClass();
+            assertThrows(ClassNotFoundException.class, () -> Class.forName(adaptiveClass.getName(), false, HiddenExt.class.getClassLoader()));
+            ExtensionFactory.resetExtensionFactory(HiddenExt.class);
+            ExtensionFactory<HiddenExt> factory = ExtensionFactory.getExtensionFactory(HiddenExt.class);
+            assertNull(factory.getLoadedAdaptiveExtensionInstances());
+            assertNotSame(adaptiveClass, factory.getAdaptiveExtension().getClass());
+        } finally {
+            System.clearProperty(ClassDefiner.ADAPTIVE_DEFINE_PROPERTY);
+            ExtensionFactory.resetExtensionFactory(HiddenExt.class);
+        }
+    }
+
     @Test
     public void test_getAdaptiveExtension_ExceptionWhenNoAdaptiveMethodOnInterface() throws Exception {
         try {
@@ -291,4 +327,31 @@ public class ExtensionFactory_Adaptive_Test {
         Ext6Impl2 impl = (Ext6Impl2) ext;
         assertNull(impl.getList());
     }
+
+    @Test
+    public void test_getAdaptiveExtension_scopes() throws Exception {
+        DispatchScopeExt ext = ExtensionFactory.getExtensionFactory(DispatchScopeExt.class).getAdaptiveExtension();
+        SimpleParam prototype = new SimpleParam();
+        prototype.setKey1("prototype");
+        SimpleParam thread = new SimpleParam();
+        thread.setKey1("thread");
+        SimpleParam pooled = new SimpleParam();
+        pooled.setKey1("pooled");
+
+        // a new prototype for every call, one instance per thread
+        assertNotSame(ext.self(prototype), ext.self(prototype));
+        DispatchScopeExt threadExt = ext.self(thread);
+        assertSame(threadExt, ext.self(thread));
+        // a pooled instance is borrowed for the call and returned to the pool of 1 instance
+        DispatchScopeExt pooledExt = ext.self(pooled);
+        assertTrue(pooledExt instanceof PooledDispatchScopeExt);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertNotSame(threadExt, executor.submit(() -> ext.self(thread)).get(10, TimeUnit.SECONDS));
+            assertSame(pooledExt, executor.submit(() -> ext.self(pooled)).get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
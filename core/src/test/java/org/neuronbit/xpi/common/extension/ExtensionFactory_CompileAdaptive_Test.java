@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.neuronbit.xpi.common.compiler.support.AdaptiveCompiler;
+import org.neuronbit.xpi.common.extension.adaptive.HasAdaptiveExt;
+import org.neuronbit.xpi.common.extension.ext1.SimpleParam;
+import org.neuronbit.xpi.common.extension.ext20_batch.BatchExt1;
+import org.neuronbit.xpi.common.extension.ext20_batch.BatchExt2;
+import org.neuronbit.xpi.common.extension.ext5.NoAdaptiveMethodExt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The adaptive classes of the ext20_batch interfaces are compiled by this test only, once per JVM
+ */
+public class ExtensionFactory_CompileAdaptive_Test {
+
+    @BeforeAll
+    public static void setUp() {
+        AdaptiveCompiler.setDefaultCompiler("jdk");
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        AdaptiveCompiler.setDefaultCompiler("javassist");
+    }
+
+    @Test
+    public void test_compileAdaptiveExtensions() {
+        Map<Class<?>, Class<?>> classes = ExtensionFactory.compileAdaptiveExtensions(
+                Arrays.asList(BatchExt1.class, HasAdaptiveExt.class, NoAdaptiveMethodExt.class, BatchExt2.class, BatchExt1.class));
+        // the adaptive extension and the interface without adaptive method are skipped, duplicates compiled once
+        assertEquals(Arrays.asList(BatchExt1.class, BatchExt2.class), new ArrayList<>(classes.keySet()));
+        assertEquals(BatchExt1.class.getName() + "$Adaptive", classes.get(BatchExt1.class).getName());
+        assertEquals(BatchExt2.class.getName() + "$Adaptive", classes.get(BatchExt2.class).getName());
+
+        BatchExt1 ext1 = ExtensionFactory.getExtensionFactory(BatchExt1.class).getAdaptiveExtension();
+        assertSame(classes.get(BatchExt1.class), ext1.getClass());
+        assertEquals("batch1-haha", ext1.echo(new SimpleParam(), "haha"));
+        BatchExt2 ext2 = ExtensionFactory.getExtensionFactory(BatchExt2.class).getAdaptiveExtension();
+        assertSame(classes.get(BatchExt2.class), ext2.getClass());
+        assertEquals("batch2-haha", ext2.echo(new SimpleParam(), "haha"));
+
+        // created adaptive classes are not compiled again
+        assertTrue(ExtensionFactory.compileAdaptiveExtensions(Collections.singletonList(BatchExt1.class)).isEmpty());
+    }
+}
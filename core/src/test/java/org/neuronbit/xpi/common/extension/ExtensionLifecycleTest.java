@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neuronbit.xpi.common.extension.ext18_lifecycle.HangingExt;
+import org.neuronbit.xpi.common.extension.ext18_lifecycle.LifecycleEvents;
+import org.neuronbit.xpi.common.extension.ext18_lifecycle.RepositoryExt;
+import org.neuronbit.xpi.common.extension.ext18_lifecycle.ServerExt;
+import org.neuronbit.xpi.common.extension.ext18_lifecycle.impl.HangingExtImpl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExtensionLifecycleTest {
+
+    @BeforeEach
+    public void setup() {
+        LifecycleEvents.EVENTS.clear();
+    }
+
+    @Test
+    public void test_start_destroy_dependencyOrder() {
+        ExtensionFactory.getExtensionFactory(ServerExt.class).getExtension("server");
+        ExtensionFactory.getExtensionFactory(RepositoryExt.class).getExtension("repository");
+        List<Class<?>> types = asList(ServerExt.class, RepositoryExt.class);
+
+        ExtensionBootstrap.Report started = ExtensionLifecycle.start(types, 5, TimeUnit.SECONDS);
+        assertEquals(asList("repository-start", "server-start"), LifecycleEvents.EVENTS);
+        assertEquals(2, started.getNodes().size());
+        assertTrue(started.getFailedNodes().isEmpty());
+
+        LifecycleEvents.EVENTS.clear();
+        ExtensionBootstrap.Report destroyed = ExtensionLifecycle.destroy(types, 5, TimeUnit.SECONDS);
+        assertEquals(asList("server-destroy", "repository-destroy"), LifecycleEvents.EVENTS);
+        assertEquals(asList("server", "repository"), asList(destroyed.getNodes().get(0).getName(), destroyed.getNodes().get(1).getName()));
+        for (ExtensionBootstrap.Node node : destroyed.getNodes()) {
+            assertTrue(node.getElapsedNanos() >= 0);
+        }
+    }
+
+    @Test
+    public void test_destroy_timeout() {
+        ExtensionFactory.getExtensionFactory(HangingExt.class).getExtension("hanging");
+        try {
+            long start = System.nanoTime();
+            ExtensionBootstrap.Report report = ExtensionLifecycle.destroy(singletonList(HangingExt.class), 100, TimeUnit.MILLISECONDS);
+            assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+            assertEquals(1, report.getFailedNodes().size());
+            assertTrue(report.getFailedNodes().get(0).getFailure() instanceof TimeoutException);
+            assertTrue(LifecycleEvents.EVENTS.isEmpty());
+        } finally {
+            HangingExtImpl.RELEASE.countDown();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension;
+
+import org.junit.jupiter.api.Test;
+import org.neuronbit.xpi.common.extension.ext1.SimpleExt;
+import org.neuronbit.xpi.common.extension.ext1.SimpleParam;
+import org.neuronbit.xpi.common.extension.ext18_lifecycle.LifecycleEvents;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+public class ExtensionScopeTest {
+
+    private static final String PLUGIN_PACKAGE = "org.neuronbit.xpi.common.extension.ext19_plugin.";
+
+    @Test
+    public void test_defaultScope() {
+        assertSame(ExtensionScope.getDefault(), ExtensionScope.current());
+        assertSame(ExtensionScope.getDefault().getExtensionFactory(SimpleExt.class), ExtensionFactory.getExtensionFactory(SimpleExt.class));
+        assertThrows(IllegalStateException.class, () -> ExtensionScope.getDefault().close());
+    }
+
+    @Test
+    public void test_close_forgetsPlugin() throws Exception {
+        LifecycleEvents.EVENTS.clear();
+        PluginClassLoader classLoader = new PluginClassLoader(getClass().getClassLoader());
+        ExtensionScope scope = new ExtensionScope(classLoader);
+        Class<?> type = classLoader.loadClass(PLUGIN_PACKAGE + "PluginExt");
+        Class<?> implClass = usePlugin(scope, type).getClass();
+
+        scope.close();
+        assertEquals(singletonList("plugin-destroy"), LifecycleEvents.EVENTS);
+        assertTrue(scope.isClosed());
+        assertNull(scope.getClassLoader());
+        assertThrows(IllegalStateException.class, () -> scope.getExtensionFactory(type));
+        // the scope references neither the factories nor the instances of the plugin
+        assertTrue(scope.getFactories().isEmpty());
+        assertNull(scope.getInstance(implClass));
+    }
+
+    @Test
+    public void test_close_unloadsClassLoader() throws Exception {
+        assumeFalse(ManagementFactory.getRuntimeMXBean().getInputArguments().contains("-XX:+DisableExplicitGC"),
+                "explicit garbage collection is disabled");
+        WeakReference<ClassLoader> classLoader = closePlugin();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (classLoader.get() != null && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertNull(classLoader.get());
+    }
+
+    private WeakReference<ClassLoader> closePlugin() throws Exception {
+        PluginClassLoader classLoader = new PluginClassLoader(getClass().getClassLoader());
+        try (ExtensionScope scope = new ExtensionScope(classLoader)) {
+            usePlugin(scope, classLoader.loadClass(PLUGIN_PACKAGE + "PluginExt"));
+        }
+        return new WeakReference<>(classLoader);
+    }
+
+    /**
+     * @return the plugin extension
+     */
+    private Object usePlugin(ExtensionScope scope, Class<?> type) throws Exception {
+        ClassLoader classLoader = scope.getClassLoader();
+        assertSame(classLoader, type.getClassLoader());
+
+        ExtensionFactory<?> factory = scope.getExtensionFactory(type);
+        assertNotSame(factory, scope.getExtensionFactory(SimpleExt.class));
+        Object adaptive = factory.getAdaptiveExtension();
+        assertSame(classLoader, adaptive.getClass().getClassLoader());
+        Object echo = type.getMethod("echo", SimpleParam.class, String.class).invoke(adaptive, new SimpleParam(), "echo");
+        assertEquals("plugin-Ext1Impl1-echo", echo);
+        Object extension = factory.getExtension("impl");
+        assertSame(classLoader, extension.getClass().getClassLoader());
+        // the thread instances are kept by the factory, not by the threads
+        Object thread = factory.getExtension("thread");
+        assertSame(thread, factory.getExtension("thread"));
+        assertSame(classLoader, thread.getClass().getClassLoader());
+
+        // injected in the scope, not in the default scope
+        assertNotSame(ExtensionFactory.getExtensionFactory(SimpleExt.class), scope.getExtensionFactory(SimpleExt.class));
+        assertNotNull(scope.getExtensionFactory(SimpleExt.class).getLoadedAdaptiveExtensionInstances());
+        return extension;
+    }
+
+    /**
+     * loads the classes of the plugin package itself, the other classes from its parent
+     */
+    private static final class PluginClassLoader extends ClassLoader {
+
+        PluginClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(PLUGIN_PACKAGE)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> clazz = findLoadedClass(name);
+                if (clazz == null) {
+                    byte[] bytes = read(name.replace('.', '/') + ".class");
+                    clazz = defineClass(name, bytes, 0, bytes.length);
+                }
+                return clazz;
+            }
+        }
+
+        private byte[] read(String resource) throws ClassNotFoundException {
+            try (InputStream in = getParent().getResourceAsStream(resource)) {
+                if (in == null) {
+                    throw new ClassNotFoundException(resource);
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                return out.toByteArray();
+            } catch (IOException e) {
+                throw new ClassNotFoundException(resource, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.ext16_async.impl;
+
+import org.neuronbit.xpi.common.context.Lifecycle;
+import org.neuronbit.xpi.common.extension.ext1.SimpleExt;
+import org.neuronbit.xpi.common.extension.ext16_async.AsyncExt;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FailingAsyncExt implements AsyncExt, Lifecycle {
+    public static final AtomicInteger ATTEMPTS = new AtomicInteger();
+
+    @Override
+    public SimpleExt getSimpleExt() {
+        return null;
+    }
+
+    @Override
+    public void initialize() throws IllegalStateException {
+        ATTEMPTS.incrementAndGet();
+        throw new IllegalStateException("failing");
+    }
+
+    @Override
+    public void start() throws IllegalStateException {
+    }
+
+    @Override
+    public void destroy() throws IllegalStateException {
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.ext16_async.impl;
+
+import org.neuronbit.xpi.common.context.Lifecycle;
+import org.neuronbit.xpi.common.extension.ext1.SimpleExt;
+import org.neuronbit.xpi.common.extension.ext16_async.AsyncExt;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * initialized once {@link #RELEASE} is counted down
+ */
+public class SlowAsyncExt implements AsyncExt, Lifecycle {
+    public static final AtomicInteger INITIALIZED = new AtomicInteger();
+
+    public static volatile CountDownLatch RELEASE = new CountDownLatch(0);
+
+    private SimpleExt simpleExt;
+
+    private SimpleExt injectedBeforeInitialize;
+
+    public void setSimpleExt(SimpleExt simpleExt) {
+        this.simpleExt = simpleExt;
+    }
+
+    @Override
+    public SimpleExt getSimpleExt() {
+        return injectedBeforeInitialize;
+    }
+
+    @Override
+    public void initialize() throws IllegalStateException {
+        injectedBeforeInitialize = simpleExt;
+        try {
+            if (!RELEASE.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Not released");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        INITIALIZED.incrementAndGet();
+    }
+
+    @Override
+    public void start() throws IllegalStateException {
+    }
+
+    @Override
+    public void destroy() throws IllegalStateException {
+    }
+}
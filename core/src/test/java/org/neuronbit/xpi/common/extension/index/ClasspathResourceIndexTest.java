@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.index;
+
+import org.neuronbit.xpi.common.extension.ext1.SimpleExt;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipException;
+
+public class ClasspathResourceIndexTest {
+
+    private static final List<String> DIRECTORIES = Arrays.asList("META-INF/xpi/", "META-INF/xpi/internal/", "META-INF/services/");
+
+    @Test
+    public void testDirectoryRoots() throws Exception {
+        ClassLoader classLoader = getClass().getClassLoader();
+        ClasspathResourceIndex index = ClasspathResourceIndex.getIndex(classLoader, DIRECTORIES);
+
+        String fileName = SimpleExt.class.getName();
+        Assertions.assertEquals(Collections.list(classLoader.getResources("META-INF/xpi/" + fileName)),
+                index.getResources("META-INF/xpi/", fileName));
+        Assertions.assertTrue(index.getResources("META-INF/xpi/", "missing").isEmpty());
+        Assertions.assertNull(index.getResources("META-INF/unknown/", fileName));
+        Assertions.assertSame(index, ClasspathResourceIndex.getIndex(classLoader, DIRECTORIES.subList(0, 1)));
+    }
+
+    @Test
+    public void testJarRoots(@TempDir Path dir) throws Exception {
+        // neither directory entries nor manifest, before a jar with directory entries
+        File first = writeJar(dir.resolve("first.jar").toFile(), false, null, "META-INF/xpi/a.Type", "META-INF/xpi/nested/c.Type");
+        File second = writeJar(dir.resolve("second.jar").toFile(), true, new Manifest(), "META-INF/xpi/a.Type", "META-INF/xpi/internal/b.Type");
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{first.toURI().toURL(), second.toURI().toURL()}, null)) {
+            ClasspathResourceIndex index = ClasspathResourceIndex.getIndex(classLoader, DIRECTORIES);
+
+            List<URL> urls = index.getResources("META-INF/xpi/", "a.Type");
+            Assertions.assertEquals(Collections.list(classLoader.getResources("META-INF/xpi/a.Type")), urls);
+            Assertions.assertTrue(urls.get(0).toString().contains("first.jar!/META-INF/xpi/a.Type"), urls.get(0).toString());
+            Assertions.assertEquals("META-INF/xpi/a.Type", read(urls.get(0)));
+            Assertions.assertEquals(1, index.getResources("META-INF/xpi/internal/", "b.Type").size());
+            Assertions.assertTrue(index.getResources("META-INF/xpi/", "c.Type").isEmpty());
+
+            ClasspathResourceIndex nested = ClasspathResourceIndex.getIndex(classLoader, Collections.singletonList("META-INF/xpi/nested/"));
+            Assertions.assertEquals(1, nested.getResources("META-INF/xpi/nested/", "c.Type").size());
+            Assertions.assertEquals(2, nested.getResources("META-INF/xpi/", "a.Type").size());
+        }
+    }
+
+    @Test
+    public void testManifestClassPath(@TempDir Path dir) throws Exception {
+        File referenced = writeJar(dir.resolve("referenced.jar").toFile(), false, null, "META-INF/xpi/a.Type");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, referenced.getName());
+        File first = writeJar(dir.resolve("first.jar").toFile(), false, manifest, "META-INF/xpi/a.Type");
+        File last = writeJar(dir.resolve("last.jar").toFile(), false, null, "META-INF/xpi/a.Type");
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{first.toURI().toURL(), last.toURI().toURL()}, null)) {
+            List<URL> urls = ClasspathResourceIndex.getIndex(classLoader, DIRECTORIES).getResources("META-INF/xpi/", "a.Type");
+            Assertions.assertEquals(Collections.list(classLoader.getResources("META-INF/xpi/a.Type")), urls);
+            Assertions.assertEquals(3, urls.size());
+            Assertions.assertTrue(urls.get(1).toString().contains("referenced.jar!/"), urls.get(1).toString());
+        }
+    }
+
+    @Test
+    public void testUnknownRoots() {
+        ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+        };
+        Assertions.assertNull(ClasspathResourceIndex.getIndex(classLoader, DIRECTORIES).getResources("META-INF/xpi/", "a.Type"));
+    }
+
+    private static File writeJar(File file, boolean directoryEntries, Manifest manifest, String... names) throws Exception {
+        JarOutputStream out;
+        if (manifest == null) {
+            out = new JarOutputStream(new FileOutputStream(file));
+        } else {
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            out = new JarOutputStream(new FileOutputStream(file), manifest);
+        }
+        try {
+            for (String name : names) {
+                if (directoryEntries) {
+                    String directory = name.substring(0, name.lastIndexOf('/') + 1);
+                    try {
+                        out.putNextEntry(new JarEntry(directory));
+                    } catch (ZipException duplicate) {
+                        // already written
+                    }
+                }
+                out.putNextEntry(new JarEntry(name));
+                out.write(name.getBytes(StandardCharsets.UTF_8));
+            }
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static String read(URL url) throws Exception {
+        URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+        try (InputStream in = connection.getInputStream()) {
+            byte[] bytes = new byte[64];
+            int length = in.read(bytes);
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
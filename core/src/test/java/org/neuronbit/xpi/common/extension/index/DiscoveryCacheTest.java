@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.index;
+
+import org.neuronbit.xpi.common.extension.ActivateCriteria;
+import org.neuronbit.xpi.common.extension.ExtensionClassLoader;
+import org.neuronbit.xpi.common.extension.ExtensionFactory;
+import org.neuronbit.xpi.common.extension.ExtensionSource;
+import org.neuronbit.xpi.common.extension.ext1.SimpleParam;
+import org.neuronbit.xpi.common.extension.ext13_cache.CachedExt;
+import org.neuronbit.xpi.common.extension.ext13_cache.impl.CachedExtImpl1;
+import org.neuronbit.xpi.common.utils.ClassUtils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class DiscoveryCacheTest {
+
+    @Test
+    public void testFingerprint(@TempDir Path dir) throws Exception {
+        File jar = Files.write(dir.resolve("a.jar"), new byte[]{1, 2, 3}).toFile();
+        Path classes = Files.createDirectories(dir.resolve("classes/a"));
+        Files.write(classes.resolve("A.class"), new byte[]{1});
+        List<File> classPath = Arrays.asList(jar, dir.resolve("classes").toFile());
+        List<String> directories = Collections.singletonList("META-INF/xpi/");
+
+        String fingerprint = DiscoveryCache.fingerprint(classPath, directories);
+        Assertions.assertEquals(fingerprint, DiscoveryCache.fingerprint(classPath, directories));
+        Assertions.assertNotEquals(fingerprint, DiscoveryCache.fingerprint(classPath, Collections.singletonList("META-INF/services/")));
+
+        Files.write(classes.resolve("B.class"), new byte[]{1});
+        String added = DiscoveryCache.fingerprint(classPath, directories);
+        Assertions.assertNotEquals(fingerprint, added);
+
+        Files.write(jar.toPath(), new byte[]{1, 2, 3, 4});
+        Assertions.assertNotEquals(added, DiscoveryCache.fingerprint(classPath, directories));
+    }
+
+    @Test
+    public void testDisabled() {
+        DiscoveryCache cache = DiscoveryCache.getCache(getClass().getClassLoader(), Collections.singletonList("META-INF/xpi/"));
+        Assertions.assertFalse(cache.isEnabled());
+        Assertions.assertTrue(cache.getEntries(CachedExt.class.getName()).isEmpty());
+        Assertions.assertNull(cache.getAdaptiveClass("a.Type$Adaptive"));
+    }
+
+    @Test
+    public void testCache(@TempDir Path dir) throws Exception {
+        System.setProperty(DiscoveryCache.CACHE_DIRECTORY_PROPERTY, dir.toString());
+        try {
+            ExtensionFactory.resetExtensionFactory(CachedExt.class);
+            ExtensionFactory<CachedExt> factory = ExtensionFactory.getExtensionFactory(CachedExt.class);
+            Assertions.assertEquals("wrapped-CachedExtImpl1-hello", factory.getExtension("impl1").echo(null, "hello"));
+            Assertions.assertEquals("wrapped-CachedExtImpl1-hello", factory.getAdaptiveExtension().echo(new SimpleParam(), "hello"));
+
+            Set<String> directories = ExtensionClassLoader.getLoadingStrategies().stream().map(ExtensionSource::directory).collect(Collectors.toSet());
+            DiscoveryCache cache = DiscoveryCache.getCache(ClassUtils.getClassLoader(ExtensionClassLoader.class), directories);
+            Assertions.assertTrue(cache.isEnabled());
+            List<ExtensionIndexEntry> entries = cache.getEntries(CachedExt.class.getName());
+            Assertions.assertEquals(2, entries.size());
+            Assertions.assertEquals("impl1", entries.get(0).getName());
+            Assertions.assertEquals(ExtensionIndexEntry.Kind.EXTENSION, entries.get(0).getKind());
+            Assertions.assertArrayEquals(new String[]{"cached"}, entries.get(0).getActivate().group());
+            Assertions.assertEquals(2, entries.get(0).getActivate().order());
+            Assertions.assertEquals(ExtensionIndexEntry.Kind.WRAPPER, entries.get(1).getKind());
+            Assertions.assertNotNull(cache.getAdaptiveClass(CachedExt.class.getName() + "$Adaptive"));
+
+            // the next factory loads the extensions from the cache only
+            List<ExtensionIndexEntry> cached = new ArrayList<>(entries);
+            ExtensionIndexEntry first = entries.get(0);
+            cached.add(new ExtensionIndexEntry(first.getDirectory(), first.getType(), "cached", CachedExtImpl1.class.getName(),
+                    ExtensionIndexEntry.Kind.EXTENSION, null));
+            cache.putEntries(CachedExt.class.getName(), cached);
+            ExtensionFactory.resetExtensionFactory(CachedExt.class);
+            factory = ExtensionFactory.getExtensionFactory(CachedExt.class);
+            Assertions.assertEquals("wrapped-CachedExtImpl1-hello", factory.getExtension("cached").echo(null, "hello"));
+            Assertions.assertEquals(1, factory.getActivateExtension(new ActivateCriteria(), new String[0], "cached").size());
+        } finally {
+            System.clearProperty(DiscoveryCache.CACHE_DIRECTORY_PROPERTY);
+            ExtensionFactory.resetExtensionFactory(CachedExt.class);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.index;
+
+import org.neuronbit.xpi.common.extension.ActivateCriteria;
+import org.neuronbit.xpi.common.extension.ExtensionFactory;
+import org.neuronbit.xpi.common.extension.ExtensionScope;
+import org.neuronbit.xpi.common.extension.ext11_index.IndexedExt;
+import org.neuronbit.xpi.common.extension.ext11_index.impl.IndexedExtImpl;
+import org.neuronbit.xpi.common.extension.ext11_index.impl.UnindexedExtImpl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class ExtensionIndexTest {
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        ExtensionIndexEntry entry1 = new ExtensionIndexEntry("META-INF/xpi/", "a.Type", "n1,n2", "a.Impl",
+                ExtensionIndexEntry.Kind.EXTENSION, new IndexedActivate(new String[]{"g1", "g2"}, new String[]{"k:v"},
+                new String[0], new String[]{"n3"}, -1));
+        ExtensionIndexEntry entry2 = new ExtensionIndexEntry("META-INF/xpi/internal/", "a.Type", null, "a.Wrapper",
+                ExtensionIndexEntry.Kind.WRAPPER, null);
+
+        StringWriter writer = new StringWriter();
+        ExtensionIndex.write(writer, Arrays.asList(entry1, entry2));
+        List<ExtensionIndexEntry> entries = ExtensionIndex.read(new BufferedReader(new StringReader(writer.toString())));
+
+        Assertions.assertEquals(2, entries.size());
+        ExtensionIndexEntry read1 = entries.get(0);
+        Assertions.assertEquals("META-INF/xpi/", read1.getDirectory());
+        Assertions.assertEquals("a.Type", read1.getType());
+        Assertions.assertEquals("n1,n2", read1.getName());
+        Assertions.assertEquals("a.Impl", read1.getClassName());
+        Assertions.assertEquals(ExtensionIndexEntry.Kind.EXTENSION, read1.getKind());
+        Assertions.assertArrayEquals(new String[]{"g1", "g2"}, read1.getActivate().group());
+        Assertions.assertArrayEquals(new String[]{"k:v"}, read1.getActivate().value());
+        Assertions.assertArrayEquals(new String[0], read1.getActivate().before());
+        Assertions.assertArrayEquals(new String[]{"n3"}, read1.getActivate().after());
+        Assertions.assertEquals(-1, read1.getActivate().order());
+
+        ExtensionIndexEntry read2 = entries.get(1);
+        Assertions.assertNull(read2.getName());
+        Assertions.assertEquals(ExtensionIndexEntry.Kind.WRAPPER, read2.getKind());
+        Assertions.assertNull(read2.getActivate());
+    }
+
+    @Test
+    public void testMalformed() {
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> ExtensionIndex.read(new BufferedReader(new StringReader("META-INF/xpi/\ta.Type\n"))));
+    }
+
+    @Test
+    public void testLoadFromIndex() {
+        ExtensionFactory<IndexedExt> factory = ExtensionFactory.getExtensionFactory(IndexedExt.class);
+
+        IndexedExt ext = factory.getExtension("impl");
+        Assertions.assertEquals("wrapped-hello", ext.echo("hello"));
+        Assertions.assertSame(ext, factory.getExtension("impl"));
+        Assertions.assertEquals("wrapped-hello", factory.getExtension("alias").echo("hello"));
+        Assertions.assertEquals("impl", factory.getExtensionName(IndexedExtImpl.class));
+
+        List<IndexedExt> activates = factory.getActivateExtension(new ActivateCriteria(), new String[0], "indexed");
+        Assertions.assertEquals(1, activates.size());
+    }
+
+    @Test
+    public void testScanUnindexedRoots(@TempDir Path root) throws Exception {
+        Path config = root.resolve("META-INF/xpi/" + IndexedExt.class.getName());
+        Files.createDirectories(config.getParent());
+        Files.write(config, ("unindexed=" + UnindexedExtImpl.class.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{root.toUri().toURL()}, getClass().getClassLoader());
+             ExtensionScope scope = new ExtensionScope(classLoader)) {
+            ExtensionFactory<IndexedExt> factory = scope.getExtensionFactory(IndexedExt.class);
+            Assertions.assertEquals("wrapped-hello", factory.getExtension("impl").echo("hello"));
+            Assertions.assertEquals("wrapped-unindexed-hello", factory.getExtension("unindexed").echo("hello"));
+            Assertions.assertEquals(3, factory.getSupportedExtensions().size());
+        }
+    }
+}
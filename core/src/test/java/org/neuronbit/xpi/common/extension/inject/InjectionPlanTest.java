@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.inject;
+
+import org.neuronbit.xpi.common.extension.ext1.SimpleExt;
+import org.neuronbit.xpi.common.extension.ext1.impl.SimpleExtImpl1;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class InjectionPlanTest {
+
+    public static class Bean {
+        private SimpleExt simpleExt;
+
+        public void setSimpleExt(SimpleExt simpleExt) {
+            this.simpleExt = simpleExt;
+        }
+
+        public void setRunnable(Runnable runnable) {
+        }
+
+        @DisableInject
+        public void setDisabled(SimpleExt simpleExt) {
+        }
+
+        public void setName(String name) {
+        }
+
+        public void setCount(int count) {
+        }
+
+        public void setPair(SimpleExt first, SimpleExt second) {
+        }
+
+        protected void setHidden(SimpleExt simpleExt) {
+        }
+    }
+
+    @Test
+    public void testSetters() throws Throwable {
+        InjectionPlan plan = InjectionPlan.of(Bean.class);
+        Assertions.assertSame(plan, InjectionPlan.of(Bean.class));
+
+        Map<String, InjectionPlan.Setter> setters = new TreeMap<>();
+        Arrays.stream(plan.getSetters()).forEach(setter -> setters.put(setter.getProperty(), setter));
+        Assertions.assertEquals(Arrays.asList("runnable", "simpleExt"), Arrays.asList(setters.keySet().toArray()));
+        Assertions.assertEquals(SimpleExt.class, setters.get("simpleExt").getType());
+        Assertions.assertEquals("setSimpleExt", setters.get("simpleExt").getName());
+
+        Bean bean = new Bean();
+        SimpleExt ext = new SimpleExtImpl1();
+        setters.get("simpleExt").invoke(bean, ext);
+        Assertions.assertSame(ext, bean.simpleExt);
+    }
+}
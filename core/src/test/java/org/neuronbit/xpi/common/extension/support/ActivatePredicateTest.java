@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.support;
+
+import org.neuronbit.xpi.common.extension.ActivateCriteria;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ActivatePredicateTest {
+
+    @Test
+    public void testNoCondition() {
+        ActivatePredicate predicate = ActivatePredicate.compile(new String[0]);
+        Assertions.assertTrue(predicate.test(new ActivateCriteria()));
+        Assertions.assertTrue(predicate.test(null));
+        Assertions.assertEquals(0, predicate.getKeys().length);
+    }
+
+    @Test
+    public void testAnyValue() {
+        ActivatePredicate predicate = ActivatePredicate.compile(new String[]{"cache"});
+        Assertions.assertTrue(predicate.test(new ActivateCriteria("cache", "lru")));
+        Assertions.assertFalse(predicate.test(new ActivateCriteria("cache", "")));
+        Assertions.assertFalse(predicate.test(new ActivateCriteria("cache", "null")));
+        Assertions.assertFalse(predicate.test(new ActivateCriteria("other", "lru")));
+        Assertions.assertFalse(predicate.test(null));
+    }
+
+    @Test
+    public void testExpectedValue() {
+        ActivatePredicate predicate = ActivatePredicate.compile(new String[]{"monitor:on", "trace"});
+        Assertions.assertArrayEquals(new String[]{"monitor", "trace"}, predicate.getKeys());
+        Assertions.assertTrue(predicate.test(new ActivateCriteria("monitor", "on")));
+        Assertions.assertFalse(predicate.test(new ActivateCriteria("monitor", "off")));
+        Assertions.assertTrue(predicate.test(new ActivateCriteria("trace", "true")));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.support;
+
+import org.neuronbit.xpi.common.extension.Activate;
+import org.neuronbit.xpi.common.extension.index.IndexedActivate;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ActivateSorterTest {
+
+    private static final String[] NONE = new String[0];
+
+    @Test
+    public void testOrder() {
+        Map<String, Activate> activates = new LinkedHashMap<>();
+        activates.put("c", activate(NONE, NONE, 3));
+        activates.put("a", activate(NONE, NONE, 1));
+        activates.put("b2", activate(NONE, NONE, 2));
+        activates.put("b1", activate(NONE, NONE, 2));
+        Map<String, String> classNames = new HashMap<>();
+        classNames.put("b1", Filter1.class.getName());
+        classNames.put("b2", Filter2.class.getName());
+
+        Assertions.assertEquals(Arrays.asList("a", "b1", "b2", "c"), ActivateSorter.sort(activates, classNames));
+    }
+
+    @Test
+    public void testBeforeAfter() {
+        Map<String, Activate> activates = new LinkedHashMap<>();
+        activates.put("first", activate(NONE, NONE, 1));
+        activates.put("second", activate(NONE, NONE, 2));
+        activates.put("third", activate(new String[]{"second"}, NONE, 3));
+        activates.put("fourth", activate(NONE, new String[]{"third", "missing"}, 0));
+
+        Assertions.assertEquals(Arrays.asList("first", "third", "fourth", "second"), ActivateSorter.sort(activates, new HashMap<>()));
+    }
+
+    @Test
+    public void testCycle() {
+        Map<String, Activate> activates = new LinkedHashMap<>();
+        activates.put("a", activate(new String[]{"b"}, NONE, 0));
+        activates.put("b", activate(new String[]{"c"}, NONE, 0));
+        activates.put("c", activate(new String[]{"b"}, NONE, 0));
+        activates.put("d", activate(NONE, new String[]{"a"}, 0));
+        activates.put("e", activate(NONE, NONE, 0));
+
+        IllegalStateException e = Assertions.assertThrows(IllegalStateException.class, () -> ActivateSorter.sort(activates, new HashMap<>()));
+        Assertions.assertTrue(e.getMessage().contains("[b, c]"), e.getMessage());
+    }
+
+    private static Activate activate(String[] before, String[] after, int order) {
+        return new IndexedActivate(NONE, NONE, before, after, order);
+    }
+}
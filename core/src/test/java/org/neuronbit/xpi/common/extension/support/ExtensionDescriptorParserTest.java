@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.extension.support;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ExtensionDescriptorParserTest {
+
+    @Test
+    public void testParse() throws Exception {
+        String content = "# comment\n"
+                + "impl1=a.Impl1\n"
+                + "  impl2 = a.Impl2  # trailing comment\r\n"
+                + "\n"
+                + "   \t \n"
+                + "impl3, alias3 ,alias4=a.Impl3\r"
+                + "a.Impl4\n"
+                + "=a.Impl5\n"
+                + "impl6=\n"
+                + "#a.Commented\n"
+                + "été=a.Été";
+        ExtensionDescriptorParser parser = ExtensionDescriptorParser.parse(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+
+        List<String> lines = new ArrayList<>();
+        while (parser.next()) {
+            lines.add(parser.getName() + "|" + parser.getClassName() + "|" + parser.getLine());
+        }
+        Assertions.assertEquals(Arrays.asList(
+                "impl1|a.Impl1|impl1=a.Impl1",
+                "impl2|a.Impl2|impl2 = a.Impl2",
+                "impl3, alias3 ,alias4|a.Impl3|impl3, alias3 ,alias4=a.Impl3",
+                "null|a.Impl4|a.Impl4",
+                "null|=a.Impl5|=a.Impl5",
+                "impl6||impl6=",
+                "été|a.Été|été=a.Été"), lines);
+        Assertions.assertFalse(parser.next());
+    }
+
+    @Test
+    public void testLargeContent() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("impl").append(i).append("=a.Impl").append(i).append('\n');
+        }
+        ExtensionDescriptorParser parser = ExtensionDescriptorParser.parse(new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.UTF_8)));
+        int count = 0;
+        while (parser.next()) {
+            Assertions.assertEquals("a.Impl" + count, parser.getClassName());
+            count++;
+        }
+        Assertions.assertEquals(1000, count);
+    }
+
+    @Test
+    public void testSplitNames() {
+        Assertions.assertArrayEquals(new String[]{"impl"}, ExtensionDescriptorParser.splitNames("impl"));
+        Assertions.assertArrayEquals(new String[]{"impl", "alias"}, ExtensionDescriptorParser.splitNames("impl ,, alias"));
+    }
+}
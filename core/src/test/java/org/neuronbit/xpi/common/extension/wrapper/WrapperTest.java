@@ -16,13 +16,20 @@
  */
 package org.neuronbit.xpi.common.extension.wrapper;
 
+import org.neuronbit.xpi.common.extension.ExtensionClassLoader;
 import org.neuronbit.xpi.common.extension.ExtensionFactory;
 import org.neuronbit.xpi.common.extension.Wrapper;
+import org.neuronbit.xpi.common.extension.wrapper.impl.DemoImpl;
 import org.neuronbit.xpi.common.extension.wrapper.impl.DemoWrapper;
 import org.neuronbit.xpi.common.extension.wrapper.impl.DemoWrapper2;
 
 import org.junit.jupiter.api.Test;
 
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -38,4 +45,15 @@ public class WrapperTest {
         Demo demoWrapper2 = ExtensionFactory.getExtensionFactory(Demo.class).getExtension("demo2");
         assertTrue(demoWrapper2 instanceof DemoWrapper2);
     }
+
+    @Test
+    public void testWrapperConstructors() throws Throwable {
+        ExtensionClassLoader loader = new ExtensionClassLoader(Demo.class);
+        List<MethodHandle> constructors = loader.getWrapperConstructors("demo");
+        assertEquals(1, constructors.size());
+        assertSame(constructors, loader.getWrapperConstructors("demo"));
+        assertTrue(constructors.get(0).invoke(new DemoImpl()) instanceof DemoWrapper);
+
+        assertEquals(0, loader.getWrapperConstructors("other").size());
+    }
 }
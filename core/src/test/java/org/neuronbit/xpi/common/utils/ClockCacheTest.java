@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClockCacheTest {
+
+    @Test
+    public void testCachedOnFirstPut() {
+        ClockCache<String, Integer> cache = new ClockCache<>(3);
+        cache.put("one", 1);
+        assertEquals(1, cache.get("one"));
+        assertNull(cache.get("two"));
+        assertEquals(1, cache.remove("one"));
+        assertNull(cache.get("one"));
+        assertThrows(IllegalArgumentException.class, () -> new ClockCache<>(0));
+    }
+
+    @Test
+    public void testEvictsNotReferenced() {
+        ClockCache<String, Integer> cache = new ClockCache<>(3);
+        cache.put("one", 1);
+        cache.put("two", 2);
+        cache.put("three", 3);
+        cache.get("one");
+        cache.get("three");
+
+        cache.put("four", 4);
+        assertEquals(3, cache.size());
+        assertNull(cache.get("two"));
+        assertEquals(1, cache.get("one"));
+        assertEquals(3, cache.get("three"));
+        assertEquals(4, cache.get("four"));
+    }
+
+    @Test
+    public void testConcurrentPuts() throws Exception {
+        ClockCache<Integer, Integer> cache = new ClockCache<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int offset = t * 1000;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        cache.put(offset + i, i);
+                        cache.get(offset + i / 2);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            assertTrue(cache.size() <= 64);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
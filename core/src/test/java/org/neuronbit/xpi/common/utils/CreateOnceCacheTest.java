@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CreateOnceCacheTest {
+
+    @Test
+    public void testCreatedOnce() throws Exception {
+        CreateOnceCache<String, Object> cache = new CreateOnceCache<>();
+        AtomicInteger created = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return cache.computeIfAbsent("key", k -> {
+                        created.incrementAndGet();
+                        return new Object();
+                    });
+                }));
+            }
+            start.countDown();
+            Object value = futures.get(0).get();
+            for (Future<Object> future : futures) {
+                assertSame(value, future.get());
+            }
+            assertEquals(1, created.get());
+            assertSame(value, cache.get("key"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOtherKeysNotBlocked() throws Exception {
+        CreateOnceCache<String, String> cache = new CreateOnceCache<>();
+        cache.computeIfAbsent("created", k -> "created");
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = executor.submit(() -> cache.computeIfAbsent("slow", k -> {
+                creating.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "slow";
+            }));
+            assertTrue(creating.await(10, TimeUnit.SECONDS));
+
+            assertNull(cache.get("slow"));
+            assertEquals("created", cache.computeIfAbsent("created", k -> "again"));
+            assertEquals("fast", cache.computeIfAbsent("fast", k -> "fast"));
+
+            release.countDown();
+            assertEquals("slow", slow.get());
+            assertEquals("slow", cache.get("slow"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailureNotCached() {
+        CreateOnceCache<String, String> cache = new CreateOnceCache<>();
+        assertThrows(IllegalArgumentException.class, () -> cache.computeIfAbsent("key", k -> {
+            throw new IllegalArgumentException();
+        }));
+        assertNull(cache.get("key"));
+        assertEquals("value", cache.computeIfAbsent("key", k -> "value"));
+    }
+
+    @Test
+    public void testCircularCreation() {
+        CreateOnceCache<String, String> cache = new CreateOnceCache<>();
+        assertThrows(IllegalStateException.class, () -> cache.computeIfAbsent("key", k -> cache.computeIfAbsent("key", k2 -> "value")));
+        assertEquals("value", cache.computeIfAbsent("key", k -> "value"));
+    }
+
+    @Test
+    public void testRemove() {
+        CreateOnceCache<String, String> cache = new CreateOnceCache<>();
+        cache.computeIfAbsent("key", k -> "value");
+        assertEquals("value", cache.remove("key"));
+        assertNull(cache.get("key"));
+        assertTrue(cache.asMap().isEmpty());
+        assertEquals("other", cache.computeIfAbsent("key", k -> "other"));
+    }
+}
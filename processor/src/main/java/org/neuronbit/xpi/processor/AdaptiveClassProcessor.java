@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.processor;
+
+import org.neuronbit.xpi.common.extension.SPI;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.neuronbit.xpi.common.constants.Constants.COMMA_SPLIT_PATTERN;
+
+/**
+ * Annotation processor which generates the <code>Xxx$Adaptive</code> class of every {@link SPI} interface having
+ * {@link org.neuronbit.xpi.common.extension.Adaptive} methods, so that the adaptive classes are found by
+ * <code>Class.forName</code> at runtime instead of being generated and compiled on the startup path.
+ * <p>
+ * Only top level interfaces are handled, and an interface whose adaptive class can't be generated is reported with
+ * a warning and left to the runtime, which fails the same way on first use.
+ */
+@SupportedAnnotationTypes("org.neuronbit.xpi.common.extension.SPI")
+public class AdaptiveClassProcessor extends AbstractProcessor {
+
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(SPI.class))) {
+            if (type.getKind() != ElementKind.INTERFACE || type.getNestingKind() != NestingKind.TOP_LEVEL) {
+                continue;
+            }
+            String defaultExtName;
+            try {
+                defaultExtName = getDefaultExtensionName(type);
+            } catch (IllegalStateException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, e.getMessage(), type);
+                continue;
+            }
+            AdaptiveClassSourceGenerator generator = new AdaptiveClassSourceGenerator(processingEnv, type, defaultExtName);
+            if (!generator.hasAdaptiveMethod() || !generated.add(generator.getClassName())) {
+                continue;
+            }
+            try {
+                String code = generator.generate();
+                JavaFileObject file = processingEnv.getFiler().createSourceFile(generator.getClassName(), type);
+                try (Writer writer = file.openWriter()) {
+                    writer.write(code);
+                }
+            } catch (IllegalStateException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "Adaptive class is not generated: " + e.getMessage(), type);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Failed to write adaptive class " + generator.getClassName() + ": " + e.getMessage(), type);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * same rules as the runtime, see <code>ExtensionFactory#cacheDefaultExtensionName</code>
+     */
+    private static String getDefaultExtensionName(TypeElement type) {
+        String value = type.getAnnotation(SPI.class).value();
+        if ((value = value.trim()).length() > 0) {
+            String[] names = COMMA_SPLIT_PATTERN.split(value);
+            if (names.length > 1) {
+                throw new IllegalStateException("More than 1 default extension name on extension " + type.getQualifiedName()
+                                                        + ": " + String.join(", ", names));
+            }
+            if (names.length == 1) {
+                return names[0];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.processor;
+
+import org.neuronbit.xpi.common.extension.Adaptive;
+import org.neuronbit.xpi.common.extension.AdaptiveClassCodeGenerator;
+import org.neuronbit.xpi.common.extension.AdaptiveExtensionDispatcher;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Build time counterpart of {@link AdaptiveClassCodeGenerator}, working on the language model instead of
+ * reflection. It must generate the same code as {@link AdaptiveClassCodeGenerator}.
+ */
+public class AdaptiveClassSourceGenerator {
+
+    private static final String CODE_PACKAGE = "package %s;\n";
+
+    private static final String CODE_IMPORTS = "import %s;\n";
+
+    private static final String CODE_CLASS_DECLARATION = "public class %s$Adaptive implements %s {\n";
+
+    private static final String CODE_DISPATCHER_FIELD = "private final %1$s<%2$s> dispatcher = new %1$s<%2$s>(%2$s.class);\n";
+
+    private static final String CODE_METHOD_DECLARATION = "public %s %s(%s) %s {\n%s}\n";
+
+    private static final String CODE_METHOD_ARGUMENT = "%s arg%d";
+
+    private static final String CODE_METHOD_THROWS = "throws %s";
+
+    private static final String CODE_UNSUPPORTED = "throw new UnsupportedOperationException(\"The method %s of interface %s is not adaptive method!\");\n";
+
+    private static final String CODE_EXT_NAME_NULL_CHECK = "if(extName == null) "
+                                                                   + "throw new IllegalStateException(\"Failed to get extension (%s) name from parameters by keys(%s)\");\n";
+
+    private static final String CODE_EXTENSION_ASSIGNMENT = "%s extension = dispatcher.getExtension(extName);\n";
+
+    private static final String CODE_EXTENSION_METHOD_INVOKE_ARGUMENT = "arg%d";
+
+    private final ProcessingEnvironment processingEnv;
+
+    private final TypeElement type;
+
+    private final String defaultExtName;
+
+    public AdaptiveClassSourceGenerator(ProcessingEnvironment processingEnv, TypeElement type, String defaultExtName) {
+        this.processingEnv = processingEnv;
+        this.type = type;
+        this.defaultExtName = defaultExtName;
+    }
+
+    /**
+     * @return the qualified name of the adaptive class
+     */
+    public String getClassName() {
+        String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        return (pkg.isEmpty() ? "" : pkg + ".") + type.getSimpleName() + "$Adaptive";
+    }
+
+    /**
+     * test if given type has at least one method annotated with <code>Adaptive</code>
+     */
+    public boolean hasAdaptiveMethod() {
+        return getMethods().stream().anyMatch(m -> m.getAnnotation(Adaptive.class) != null);
+    }
+
+    /**
+     * generate and return class code
+     *
+     * @throws IllegalStateException if the adaptive class can't be generated
+     */
+    public String generate() {
+        if (!hasAdaptiveMethod()) {
+            throw new IllegalStateException("No adaptive method exist on extension " + getBinaryName(type) + ", refuse to create the adaptive class!");
+        }
+
+        StringBuilder code = new StringBuilder();
+        code.append(String.format(CODE_PACKAGE, processingEnv.getElementUtils().getPackageOf(type).getQualifiedName()));
+        code.append(String.format(CODE_IMPORTS, AdaptiveExtensionDispatcher.class.getName()));
+        code.append(String.format(CODE_CLASS_DECLARATION, type.getSimpleName(), type.getQualifiedName()));
+        code.append(String.format(CODE_DISPATCHER_FIELD, AdaptiveExtensionDispatcher.class.getName(), getBinaryName(type)));
+        for (ExecutableElement method : getMethods()) {
+            code.append(generateMethod(method));
+        }
+        code.append("}");
+        return code.toString();
+    }
+
+    /**
+     * the public instance methods of the interface, including the inherited ones, as {@link Class#getMethods()}
+     */
+    private List<ExecutableElement> getMethods() {
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (method.getEnclosingElement().getKind() == ElementKind.INTERFACE
+                        && !method.getModifiers().contains(Modifier.STATIC)) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    private String generateMethod(ExecutableElement method) {
+        String methodReturnType = erasure(method.getReturnType());
+        String methodName = method.getSimpleName().toString();
+        String methodContent = generateMethodContent(method);
+        String methodArgs = generateMethodArguments(method);
+        String methodThrows = generateMethodThrows(method);
+        return String.format(CODE_METHOD_DECLARATION, methodReturnType, methodName, methodArgs, methodThrows, methodContent);
+    }
+
+    private String generateMethodArguments(ExecutableElement method) {
+        List<String> args = new ArrayList<>();
+        for (int i = 0; i < method.getParameters().size(); i++) {
+            args.add(String.format(CODE_METHOD_ARGUMENT, erasure(method.getParameters().get(i).asType()), i));
+        }
+        return String.join(", ", args);
+    }
+
+    private String generateMethodThrows(ExecutableElement method) {
+        if (method.getThrownTypes().isEmpty()) {
+            return "";
+        }
+        return String.format(CODE_METHOD_THROWS, method.getThrownTypes().stream().map(this::erasure).collect(Collectors.joining(", ")));
+    }
+
+    private String generateMethodContent(ExecutableElement method) {
+        Adaptive adaptiveAnnotation = method.getAnnotation(Adaptive.class);
+        if (adaptiveAnnotation == null) {
+            return String.format(CODE_UNSUPPORTED, toString(method), getBinaryName(type));
+        }
+
+        String[] value = adaptiveAnnotation.value();
+        if (value.length == 0) {
+            value = new String[]{type.getSimpleName().toString()};
+        }
+
+        StringBuilder code = new StringBuilder(512);
+        code.append(generateUrlAssignmentIndirectly(method, value));
+        code.append(String.format(CODE_EXT_NAME_NULL_CHECK, getBinaryName(type), Arrays.toString(value)));
+        code.append(String.format(CODE_EXTENSION_ASSIGNMENT, getBinaryName(type)));
+
+        String returnStatement = method.getReturnType().getKind() == TypeKind.VOID ? "" : "return ";
+        List<String> args = new ArrayList<>();
+        for (int i = 0; i < method.getParameters().size(); i++) {
+            args.add(String.format(CODE_EXTENSION_METHOD_INVOKE_ARGUMENT, i));
+        }
+        code.append(returnStatement).append(String.format("extension.%s(%s);\n", method.getSimpleName(), String.join(", ", args)));
+        return code.toString();
+    }
+
+    /**
+     * same lookup as {@link AdaptiveClassCodeGenerator}: find the public String getters of the parameters matching the
+     * adaptive keys
+     */
+    private String generateUrlAssignmentIndirectly(ExecutableElement method, String[] values) {
+        Elements elements = processingEnv.getElementUtils();
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror stringType = elements.getTypeElement(String.class.getName()).asType();
+
+        LinkedHashMap<String, Integer> getterReturnUrl = new LinkedHashMap<>();
+        for (int j = (values.length - 1); j >= 0; j--) {
+            String value = values[j];
+            for (int i = 0; i < method.getParameters().size(); ++i) {
+                Element element = types.asElement(method.getParameters().get(i).asType());
+                if (!(element instanceof TypeElement)) {
+                    continue;
+                }
+                for (ExecutableElement m : ElementFilter.methodsIn(elements.getAllMembers((TypeElement) element))) {
+                    String name = m.getSimpleName().toString();
+                    if (name.equalsIgnoreCase("get" + value)
+                                && m.getModifiers().contains(Modifier.PUBLIC)
+                                && !m.getModifiers().contains(Modifier.STATIC)
+                                && m.getParameters().isEmpty()
+                                && types.isSameType(m.getReturnType(), stringType)) {
+                        getterReturnUrl.put(name, i);
+                    }
+                }
+            }
+        }
+
+        if (getterReturnUrl.size() <= 0) {
+            throw new IllegalStateException("Failed to create adaptive class for interface " + getBinaryName(type)
+                                                    + ": not found url parameter or url attribute in parameters of method " + method.getSimpleName());
+        }
+        StringBuilder code = new StringBuilder();
+        if (null == defaultExtName) {
+            code.append(String.format("%s extName = null;\n", String.class.getName()));
+        } else {
+            code.append(String.format("%s extName = \"%s\";\n", String.class.getName(), defaultExtName));
+        }
+        getterReturnUrl.forEach((name, index) -> {
+            code.append(String.format("if (arg%d != null && arg%d.%s() != null) {\n", index, index, name));
+            code.append(String.format("extName = arg%d.%s();\n", index, name));
+            code.append("}\n");
+        });
+        return code.toString();
+    }
+
+    private String erasure(TypeMirror typeMirror) {
+        return processingEnv.getTypeUtils().erasure(typeMirror).toString();
+    }
+
+    private String getBinaryName(TypeElement element) {
+        return processingEnv.getElementUtils().getBinaryName(element).toString();
+    }
+
+    /**
+     * same format as {@link java.lang.reflect.Method#toString()}
+     */
+    private String toString(ExecutableElement method) {
+        StringBuilder buf = new StringBuilder("public ");
+        if (!method.isDefault()) {
+            buf.append("abstract ");
+        }
+        buf.append(erasure(method.getReturnType())).append(' ')
+                .append(getBinaryName((TypeElement) method.getEnclosingElement())).append('.')
+                .append(method.getSimpleName()).append('(')
+                .append(method.getParameters().stream().map(p -> erasure(p.asType())).collect(Collectors.joining(",")))
+                .append(')');
+        if (!method.getThrownTypes().isEmpty()) {
+            buf.append(" throws ").append(method.getThrownTypes().stream().map(this::erasure).collect(Collectors.joining(",")));
+        }
+        return buf.toString();
+    }
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.processor;
+
+import org.neuronbit.xpi.common.extension.Activate;
+import org.neuronbit.xpi.common.extension.Adaptive;
+import org.neuronbit.xpi.common.extension.ExtensionSource;
+import org.neuronbit.xpi.common.extension.SPI;
+import org.neuronbit.xpi.common.extension.index.ExtensionIndex;
+import org.neuronbit.xpi.common.extension.index.ExtensionIndexEntry;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Annotation processor which resolves the extension configuration files of the module being compiled and writes
+ * them as an {@link ExtensionIndex} to {@link ExtensionIndex#INDEX_LOCATION}.
+ * <p>
+ * The configuration files are looked up in the directories given by the {@value #RESOURCE_DIRS_OPTION} option
+ * (separated by {@link File#pathSeparator}), e.g. <code>-Axpi.resourceDirs=src/main/resources</code>, and in the
+ * class output directory for the extension interfaces seen in the compiled sources. An extension interface is left
+ * out of the index when one of its extension classes can not be resolved, the runtime then falls back to scanning
+ * the configuration files for it.
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(ExtensionIndexProcessor.RESOURCE_DIRS_OPTION)
+public class ExtensionIndexProcessor extends AbstractProcessor {
+
+    public static final String RESOURCE_DIRS_OPTION = "xpi.resourceDirs";
+
+    /**
+     * extension interfaces seen in the compiled sources, either declared or implemented
+     */
+    private final Set<String> seenTypes = new LinkedHashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (!roundEnv.processingOver()) {
+            for (TypeElement element : ElementFilter.typesIn(roundEnv.getRootElements())) {
+                collectExtensionTypes(element.asType());
+            }
+            return false;
+        }
+
+        List<String> directories = loadDirectories();
+        // extension interface -> directory -> configuration lines
+        Map<String, Map<String, List<String>>> configs = new TreeMap<>();
+        readResourceDirs(directories, configs);
+        readClassOutput(directories, configs);
+
+        List<ExtensionIndexEntry> entries = new ArrayList<>();
+        configs.forEach((type, lines) -> entries.addAll(resolve(type, directories, lines)));
+        if (!entries.isEmpty()) {
+            writeIndex(entries);
+        }
+        return false;
+    }
+
+    private void collectExtensionTypes(TypeMirror typeMirror) {
+        Element element = processingEnv.getTypeUtils().asElement(typeMirror);
+        if (element instanceof TypeElement) {
+            TypeElement typeElement = (TypeElement) element;
+            if (typeElement.getKind() == ElementKind.INTERFACE && typeElement.getAnnotation(SPI.class) != null) {
+                seenTypes.add(processingEnv.getElementUtils().getBinaryName(typeElement).toString());
+            }
+        }
+        for (TypeMirror superType : processingEnv.getTypeUtils().directSupertypes(typeMirror)) {
+            collectExtensionTypes(superType);
+        }
+    }
+
+    private List<String> loadDirectories() {
+        ServiceLoader<ExtensionSource> sources = ServiceLoader.load(ExtensionSource.class, ExtensionIndexProcessor.class.getClassLoader());
+        return StreamSupport.stream(sources.spliterator(), false)
+                       .sorted()
+                       .map(ExtensionSource::directory)
+                       .distinct()
+                       .collect(Collectors.toList());
+    }
+
+    private void readResourceDirs(List<String> directories, Map<String, Map<String, List<String>>> configs) {
+        String option = processingEnv.getOptions().get(RESOURCE_DIRS_OPTION);
+        if (option == null || option.trim().isEmpty()) {
+            return;
+        }
+        for (String resourceDir : option.split(File.pathSeparator)) {
+            for (String directory : directories) {
+                File[] files = new File(resourceDir.trim(), directory).listFiles(File::isFile);
+                if (files == null) {
+                    continue;
+                }
+                for (File file : files) {
+                    try (InputStream in = Files.newInputStream(file.toPath())) {
+                        readConfig(in, lines(configs, file.getName(), directory));
+                    } catch (IOException e) {
+                        warn("Failed to read extension configuration " + file + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private void readClassOutput(List<String> directories, Map<String, Map<String, List<String>>> configs) {
+        for (String type : seenTypes) {
+            for (String directory : directories) {
+                if (configs.containsKey(type) && configs.get(type).containsKey(directory)) {
+                    continue;
+                }
+                try {
+                    FileObject resource = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", directory + type);
+                    try (InputStream in = resource.openInputStream()) {
+                        readConfig(in, lines(configs, type, directory));
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    // no such configuration file
+                }
+            }
+        }
+    }
+
+    private static List<String> lines(Map<String, Map<String, List<String>>> configs, String type, String directory) {
+        return configs.computeIfAbsent(type, k -> new LinkedHashMap<>()).computeIfAbsent(directory, k -> new ArrayList<>());
+    }
+
+    private static void readConfig(InputStream in, List<String> lines) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            final int ci = line.indexOf('#');
+            if (ci >= 0) {
+                line = line.substring(0, ci);
+            }
+            line = line.trim();
+            if (line.length() > 0) {
+                lines.add(line);
+            }
+        }
+    }
+
+    /**
+     * resolve the configuration lines of the given extension interface, return an empty list if the interface
+     * can't be indexed
+     */
+    private List<ExtensionIndexEntry> resolve(String type, List<String> directories, Map<String, List<String>> configs) {
+        TypeElement typeElement = findType(type);
+        if (typeElement == null || typeElement.getAnnotation(SPI.class) == null) {
+            return new ArrayList<>();
+        }
+
+        List<ExtensionIndexEntry> entries = new ArrayList<>();
+        for (String directory : directories) {
+            for (String line : configs.getOrDefault(directory, new ArrayList<>())) {
+                String name = null;
+                String className = line;
+                int i = line.indexOf('=');
+                if (i > 0) {
+                    name = line.substring(0, i).trim();
+                    className = line.substring(i + 1).trim();
+                }
+                TypeElement classElement = findType(className);
+                if (classElement == null) {
+                    warn("Extension class " + className + " of " + type + " is not resolvable, " + type + " is not indexed");
+                    return new ArrayList<>();
+                }
+                entries.add(new ExtensionIndexEntry(directory, type, name, className, kindOf(classElement, typeElement),
+                        classElement.getAnnotation(Activate.class)));
+            }
+        }
+        return entries;
+    }
+
+    private TypeElement findType(String className) {
+        TypeElement element = processingEnv.getElementUtils().getTypeElement(className);
+        if (element == null && className.indexOf('$') > 0) {
+            element = processingEnv.getElementUtils().getTypeElement(className.replace('$', '.'));
+        }
+        return element;
+    }
+
+    /**
+     * same rules as the runtime: annotated with {@link Adaptive} or having a public constructor with the extension
+     * interface as its only argument
+     */
+    private ExtensionIndexEntry.Kind kindOf(TypeElement classElement, TypeElement typeElement) {
+        if (classElement.getAnnotation(Adaptive.class) != null) {
+            return ExtensionIndexEntry.Kind.ADAPTIVE;
+        }
+        TypeMirror type = processingEnv.getTypeUtils().erasure(typeElement.asType());
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(classElement.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PUBLIC)
+                        && constructor.getParameters().size() == 1
+                        && processingEnv.getTypeUtils().isSameType(type,
+                    processingEnv.getTypeUtils().erasure(constructor.getParameters().get(0).asType()))) {
+                return ExtensionIndexEntry.Kind.WRAPPER;
+            }
+        }
+        return ExtensionIndexEntry.Kind.EXTENSION;
+    }
+
+    private void writeIndex(List<ExtensionIndexEntry> entries) {
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ExtensionIndex.INDEX_LOCATION);
+            try (Writer writer = resource.openWriter()) {
+                ExtensionIndex.write(writer, entries);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write extension index: " + e.getMessage());
+        }
+    }
+
+    private void warn(String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.processor;
+
+import org.neuronbit.xpi.common.extension.AdaptiveClassCodeGenerator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.neuronbit.xpi.processor.ExtensionIndexProcessorTest.compile;
+import static org.neuronbit.xpi.processor.ExtensionIndexProcessorTest.source;
+
+public class AdaptiveClassProcessorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testGenerateSameCodeAsRuntime() throws Exception {
+        Path src = dir.resolve("src");
+        Path out = Files.createDirectories(dir.resolve("out"));
+        Path generated = Files.createDirectories(dir.resolve("generated"));
+        source(src, "demo/Named.java", "package demo;\n"
+                                               + "public interface Named { String getName(); }");
+        source(src, "demo/Criteria.java", "package demo;\n"
+                                                  + "public interface Criteria extends Named { String getProtocol(); }");
+        source(src, "demo/Demo.java", "package demo;\n"
+                                              + "@org.neuronbit.xpi.common.extension.SPI(\" impl \")\n"
+                                              + "public interface Demo {\n"
+                                              + "  @org.neuronbit.xpi.common.extension.Adaptive({\"protocol\", \"name\"})\n"
+                                              + "  java.util.List<String> echo(Criteria criteria, String[] values, int count) throws java.io.IOException;\n"
+                                              + "}");
+        source(src, "demo/Plain.java", "package demo;\n"
+                                               + "@org.neuronbit.xpi.common.extension.SPI\n"
+                                               + "public interface Plain { void echo(); }");
+
+        compile(src, out, new AdaptiveClassProcessor(), "-s", generated.toString());
+
+        Assertions.assertTrue(Files.exists(out.resolve("demo/Demo$Adaptive.class")));
+        Assertions.assertFalse(Files.exists(generated.resolve("demo/Plain$Adaptive.java")));
+
+        String code = new String(Files.readAllBytes(generated.resolve("demo/Demo$Adaptive.java")), StandardCharsets.UTF_8);
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{out.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> type = classLoader.loadClass("demo.Demo");
+            Assertions.assertEquals(new AdaptiveClassCodeGenerator(type, "impl").generate(), code);
+            Assertions.assertTrue(type.isAssignableFrom(classLoader.loadClass("demo.Demo$Adaptive")));
+        }
+    }
+
+    @Test
+    public void testSkipUnsupportedInterface() throws Exception {
+        Path src = dir.resolve("src");
+        Path out = Files.createDirectories(dir.resolve("out"));
+        source(src, "demo/Demo.java", "package demo;\n"
+                                              + "@org.neuronbit.xpi.common.extension.SPI\n"
+                                              + "public interface Demo {\n"
+                                              + "  @org.neuronbit.xpi.common.extension.Adaptive\n"
+                                              + "  void echo(String value);\n"
+                                              + "}");
+
+        compile(src, out, new AdaptiveClassProcessor());
+
+        Assertions.assertTrue(Files.exists(out.resolve("demo/Demo.class")));
+        Assertions.assertFalse(Files.exists(out.resolve("demo/Demo$Adaptive.class")));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neuronbit.xpi.processor;
+
+import org.neuronbit.xpi.common.extension.SPI;
+import org.neuronbit.xpi.common.extension.index.ExtensionIndex;
+import org.neuronbit.xpi.common.extension.index.ExtensionIndexEntry;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.annotation.processing.Processor;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ExtensionIndexProcessorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testIndex() throws Exception {
+        Path src = dir.resolve("src");
+        Path resources = dir.resolve("resources");
+        Path out = Files.createDirectories(dir.resolve("out"));
+        source(src, "demo/Demo.java", "package demo;\n"
+                                             + "@org.neuronbit.xpi.common.extension.SPI(\"impl\")\n"
+                                             + "public interface Demo { String echo(String s); }");
+        source(src, "demo/DemoImpl.java", "package demo;\n"
+                                                  + "@org.neuronbit.xpi.common.extension.Activate(group = {\"a\", \"b\"}, value = \"key:value\", order = 2)\n"
+                                                  + "public class DemoImpl implements Demo { public String echo(String s) { return s; } }");
+        source(src, "demo/DemoWrapper.java", "package demo;\n"
+                                                     + "public class DemoWrapper implements Demo {\n"
+                                                     + "  private final Demo demo;\n"
+                                                     + "  public DemoWrapper(Demo demo) { this.demo = demo; }\n"
+                                                     + "  public String echo(String s) { return demo.echo(s); }\n"
+                                                     + "}");
+        source(src, "demo/AdaptiveDemo.java", "package demo;\n"
+                                                      + "@org.neuronbit.xpi.common.extension.Adaptive\n"
+                                                      + "public class AdaptiveDemo implements Demo { public String echo(String s) { return s; } }");
+        source(resources, "META-INF/xpi/demo.Demo", "# comment\n"
+                                                            + "impl, other=demo.DemoImpl\n"
+                                                            + "demo.DemoWrapper\n"
+                                                            + "adaptive=demo.AdaptiveDemo # trailing comment\n");
+        source(resources, "META-INF/xpi/demo.Missing", "missing=demo.MissingImpl\n");
+
+        compile(src, out, "-Axpi.resourceDirs=" + resources);
+
+        List<ExtensionIndexEntry> entries;
+        try (BufferedReader reader = Files.newBufferedReader(out.resolve(ExtensionIndex.INDEX_LOCATION), StandardCharsets.UTF_8)) {
+            entries = ExtensionIndex.read(reader);
+        }
+        Assertions.assertEquals(3, entries.size());
+
+        ExtensionIndexEntry impl = entries.get(0);
+        Assertions.assertEquals("META-INF/xpi/", impl.getDirectory());
+        Assertions.assertEquals("demo.Demo", impl.getType());
+        Assertions.assertEquals("impl, other", impl.getName());
+        Assertions.assertEquals("demo.DemoImpl", impl.getClassName());
+        Assertions.assertEquals(ExtensionIndexEntry.Kind.EXTENSION, impl.getKind());
+        Assertions.assertArrayEquals(new String[]{"a", "b"}, impl.getActivate().group());
+        Assertions.assertArrayEquals(new String[]{"key:value"}, impl.getActivate().value());
+        Assertions.assertEquals(2, impl.getActivate().order());
+
+        Assertions.assertNull(entries.get(1).getName());
+        Assertions.assertEquals(ExtensionIndexEntry.Kind.WRAPPER, entries.get(1).getKind());
+        Assertions.assertNull(entries.get(1).getActivate());
+        Assertions.assertEquals(ExtensionIndexEntry.Kind.ADAPTIVE, entries.get(2).getKind());
+    }
+
+    @Test
+    public void testNoIndexWithoutExtensions() throws Exception {
+        Path src = dir.resolve("src");
+        Path out = Files.createDirectories(dir.resolve("out"));
+        source(src, "demo/Plain.java", "package demo;\npublic class Plain {}");
+
+        compile(src, out);
+
+        Assertions.assertFalse(Files.exists(out.resolve(ExtensionIndex.INDEX_LOCATION)));
+    }
+
+    static void source(Path root, String path, String content) throws IOException {
+        Path file = root.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void compile(Path src, Path out, String... options) throws Exception {
+        compile(src, out, new ExtensionIndexProcessor(), options);
+    }
+
+    static void compile(Path src, Path out, Processor processor, String... options) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager manager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            List<File> files = new ArrayList<>();
+            Files.walk(src).filter(p -> p.toString().endsWith(".java")).forEach(p -> files.add(p.toFile()));
+            List<String> args = new ArrayList<>(Arrays.asList("-d", out.toString(),
+                    "-classpath", new File(SPI.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath()));
+            args.addAll(Arrays.asList(options));
+            Iterable<? extends JavaFileObject> units = manager.getJavaFileObjectsFromFiles(files);
+            JavaCompiler.CompilationTask task = compiler.getTask(null, manager, null, args, null, units);
+            task.setProcessors(Collections.singletonList(processor));
+            Assertions.assertTrue(task.call());
+        }
+    }
+}